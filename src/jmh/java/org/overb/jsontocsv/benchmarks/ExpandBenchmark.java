@@ -0,0 +1,61 @@
+package org.overb.jsontocsv.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.overb.jsontocsv.dto.CsvColumnDefinition;
+import org.overb.jsontocsv.libs.CsvRowExpander;
+import org.overb.jsontocsv.libs.JsonPath;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpandBenchmark {
+
+    @Param
+    public SyntheticJson.Shape shape;
+
+    private JsonNode document;
+    private List<CsvColumnDefinition> definitions;
+    private List<String> headers;
+    private String[] paths;
+    private JsonNode formulaDocument;
+    private List<CsvColumnDefinition> formulaDefinitions;
+    private List<String> formulaHeaders;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        document = SyntheticJson.document(shape);
+        definitions = SyntheticJson.definitions(shape);
+        headers = CsvRowExpander.headersFrom(definitions);
+        paths = definitions.stream().map(CsvColumnDefinition::getJsonSource).toArray(String[]::new);
+        formulaDocument = SyntheticJson.formulaDocument();
+        formulaDefinitions = SyntheticJson.formulaDefinitions();
+        formulaHeaders = CsvRowExpander.headersFrom(formulaDefinitions);
+    }
+
+    @Benchmark
+    public long streamCsvRows(Blackhole blackhole) {
+        return CsvRowExpander.streamCsvRows(document, "", definitions, headers, blackhole::consume);
+    }
+
+    @Benchmark
+    public void findNodesByPath(Blackhole blackhole) {
+        for (JsonNode record : document) {
+            for (String path : paths) {
+                blackhole.consume(JsonPath.findNodesByPath(record, path));
+            }
+        }
+    }
+
+    @Benchmark
+    public long evaluateFormulas(Blackhole blackhole) {
+        return CsvRowExpander.streamCsvRows(formulaDocument, "orders", formulaDefinitions, formulaHeaders, blackhole::consume);
+    }
+}
@@ -0,0 +1,37 @@
+package org.overb.jsontocsv.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.*;
+import org.overb.jsontocsv.libs.JsonIo;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+    @Param
+    public SyntheticJson.Shape shape;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        file = SyntheticJson.writeTempFile(SyntheticJson.document(shape), ".json");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public JsonNode loadJsonFile() throws Exception {
+        return JsonIo.loadJsonFile(file);
+    }
+}
@@ -0,0 +1,178 @@
+package org.overb.jsontocsv.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.overb.jsontocsv.dto.CsvColumnDefinition;
+import org.overb.jsontocsv.enums.ColumnTypes;
+import org.overb.jsontocsv.libs.JsonIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generators for the document shapes the benchmarks run against, together with the column definitions
+ * that convert them.
+ */
+public final class SyntheticJson {
+
+    public enum Shape {
+        /** 20k records with a dozen scalar fields each. */
+        FLAT,
+        /** 5k records whose values sit six objects deep. */
+        NESTED,
+        /** 1k records with 500 scalar fields, converted into 500 columns. */
+        WIDE,
+        /** 500 records that each expand into 150 rows through nested arrays. */
+        FANOUT
+    }
+
+    private SyntheticJson() {
+    }
+
+    public static ArrayNode document(Shape shape) {
+        Random random = new Random(42);
+        ArrayNode records = JsonIo.MAPPER.createArrayNode();
+        switch (shape) {
+            case FLAT -> {
+                for (int i = 0; i < 20_000; i++) {
+                    ObjectNode record = records.addObject();
+                    record.put("id", i);
+                    for (int f = 0; f < 11; f++) {
+                        record.put("field" + f, randomText(random));
+                    }
+                }
+            }
+            case NESTED -> {
+                for (int i = 0; i < 5_000; i++) {
+                    ObjectNode record = records.addObject();
+                    record.put("id", i);
+                    ObjectNode level = record;
+                    for (int depth = 0; depth < 6; depth++) {
+                        level = level.putObject("level" + depth);
+                        level.put("name", randomText(random));
+                        level.put("value", random.nextInt(1000));
+                    }
+                }
+            }
+            case WIDE -> {
+                for (int i = 0; i < 1_000; i++) {
+                    ObjectNode record = records.addObject();
+                    for (int f = 0; f < 500; f++) {
+                        record.put("column" + f, random.nextInt(100_000));
+                    }
+                }
+            }
+            case FANOUT -> {
+                for (int i = 0; i < 500; i++) {
+                    ObjectNode record = records.addObject();
+                    record.put("id", i);
+                    record.put("customer", i % 50);
+                    ArrayNode tags = record.putArray("tags");
+                    for (int t = 0; t < 3; t++) {
+                        tags.add("tag" + t);
+                    }
+                    ArrayNode items = record.putArray("items");
+                    for (int j = 0; j < 10; j++) {
+                        ObjectNode item = items.addObject();
+                        item.put("sku", "sku-" + random.nextInt(10_000));
+                        item.put("qty", random.nextInt(20));
+                        ArrayNode parts = item.putArray("parts");
+                        for (int k = 0; k < 5; k++) {
+                            parts.addObject().put("part", "p" + k);
+                        }
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    public static List<CsvColumnDefinition> definitions(Shape shape) {
+        List<CsvColumnDefinition> definitions = new ArrayList<>();
+        switch (shape) {
+            case FLAT -> {
+                definitions.add(column("id", "id"));
+                for (int f = 0; f < 11; f++) {
+                    definitions.add(column("field_" + f, "field" + f));
+                }
+            }
+            case NESTED -> {
+                definitions.add(column("id", "id"));
+                StringBuilder path = new StringBuilder();
+                for (int depth = 0; depth < 6; depth++) {
+                    path.append(depth == 0 ? "" : ".").append("level").append(depth);
+                    definitions.add(column("name_" + depth, path + ".name"));
+                    definitions.add(column("value_" + depth, path + ".value"));
+                }
+            }
+            case WIDE -> {
+                for (int f = 0; f < 500; f++) {
+                    definitions.add(column("column_" + f, "column" + f));
+                }
+            }
+            case FANOUT -> {
+                definitions.add(column("id", "id"));
+                definitions.add(column("tag", "tags"));
+                definitions.add(column("sku", "items.sku"));
+                definitions.add(column("qty", "items.qty"));
+                definitions.add(column("part", "items.parts.part"));
+            }
+        }
+        return definitions;
+    }
+
+    /**
+     * Formula heavy definitions over the {@link Shape#FANOUT} document: CONCAT and JSON per row plus a FIND against a
+     * lookup table stored next to the records.
+     */
+    public static List<CsvColumnDefinition> formulaDefinitions() {
+        List<CsvColumnDefinition> definitions = new ArrayList<>();
+        definitions.add(column("id", "id"));
+        definitions.add(column("customer", "customer"));
+        definitions.add(column("sku", "items.sku"));
+        definitions.add(new CsvColumnDefinition("label", "CONCAT(id, '-', sku)", ColumnTypes.FORMULA));
+        definitions.add(new CsvColumnDefinition("item_json", "JSON(qty)", ColumnTypes.FORMULA));
+        definitions.add(new CsvColumnDefinition("customer_name", "FIND(customer, customers.id, name)", ColumnTypes.FORMULA));
+        return definitions;
+    }
+
+    public static JsonNode formulaDocument() {
+        ObjectNode document = JsonIo.MAPPER.createObjectNode();
+        ArrayNode customers = document.putArray("customers");
+        for (int c = 0; c < 50; c++) {
+            ObjectNode customer = customers.addObject();
+            customer.put("id", c);
+            customer.put("name", "Customer " + c);
+        }
+        document.set("orders", document(Shape.FANOUT));
+        return document;
+    }
+
+    public static File writeTempFile(JsonNode document, String suffix) throws IOException {
+        File file = File.createTempFile("json2csv-bench-", suffix);
+        file.deleteOnExit();
+        JsonIo.MAPPER.writer().without(SerializationFeature.INDENT_OUTPUT).writeValue(file, document);
+        return file;
+    }
+
+    private static CsvColumnDefinition column(String name, String path) {
+        return new CsvColumnDefinition(name, path, ColumnTypes.DEFAULT);
+    }
+
+    private static String randomText(Random random) {
+        int length = 4 + random.nextInt(12);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        if (random.nextInt(10) == 0) {
+            sb.append(", \"quoted\"");
+        }
+        return sb.toString();
+    }
+}
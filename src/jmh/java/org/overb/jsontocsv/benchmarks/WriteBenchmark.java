@@ -0,0 +1,60 @@
+package org.overb.jsontocsv.benchmarks;
+
+import com.opencsv.CSVWriter;
+import com.opencsv.ICSVWriter;
+import org.openjdk.jmh.annotations.*;
+import org.overb.jsontocsv.dto.CsvColumnDefinition;
+import org.overb.jsontocsv.enums.CsvNullStyles;
+import org.overb.jsontocsv.libs.CsvFileWriter;
+import org.overb.jsontocsv.libs.CsvRowConsumer;
+import org.overb.jsontocsv.libs.CsvRowExpander;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+
+    @Param
+    public SyntheticJson.Shape shape;
+
+    private final List<String[]> rows = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<CsvColumnDefinition> definitions = SyntheticJson.definitions(shape);
+        CsvRowExpander.streamCsvRows(SyntheticJson.document(shape), "", definitions, CsvRowExpander.headersFrom(definitions), rows::add);
+    }
+
+    @Benchmark
+    public int rowWriter() throws IOException {
+        try (CSVWriter writer = new CSVWriter(Writer.nullWriter(), ',', ICSVWriter.NO_QUOTE_CHARACTER, ICSVWriter.NO_ESCAPE_CHARACTER, "\n")) {
+            Consumer<String[]> rowConsumer = CsvRowConsumer.rowWriter(writer, CsvNullStyles.EMPTY);
+            for (String[] row : rows) {
+                rowConsumer.accept(row);
+            }
+        }
+        return rows.size();
+    }
+
+    @Benchmark
+    public long fileWriter() throws IOException {
+        try (CsvFileWriter writer = new CsvFileWriter(Channels.newChannel(OutputStream.nullOutputStream()), CsvNullStyles.EMPTY)) {
+            for (String[] row : rows) {
+                writer.writeRow(row);
+            }
+            return writer.bytesWritten();
+        }
+    }
+}
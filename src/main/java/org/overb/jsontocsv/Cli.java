@@ -0,0 +1,252 @@
+package org.overb.jsontocsv;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.overb.jsontocsv.dto.CsvColumnDefinition;
+import org.overb.jsontocsv.dto.CsvDefinitionsBundle;
+import org.overb.jsontocsv.dto.ParallelOptions;
+import org.overb.jsontocsv.dto.SplitOptions;
+import org.overb.jsontocsv.enums.CsvNullStyles;
+import org.overb.jsontocsv.libs.CsvSink;
+import org.overb.jsontocsv.libs.CsvRowExpander;
+import org.overb.jsontocsv.libs.CustomStringUtils;
+import org.overb.jsontocsv.libs.JsonIo;
+import org.overb.jsontocsv.libs.NdjsonSplitter;
+import org.overb.jsontocsv.libs.ParallelNdjsonConverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Headless entry point for batch conversions. It shares the conversion engine with the desktop app but never touches
+ * {@link App}, so the JavaFX toolkit is not started.
+ */
+public class Cli {
+
+    private static final String USAGE = """
+            Usage: java -cp "json2csv.jar:lib/*" org.overb.jsontocsv.Cli -d <definitions.j2csv> -o <output.csv> [options] <input>...
+
+            Inputs are .json or .json.gz files; glob patterns such as data/*.json or logs/**/*.json.gz are expanded.
+            All inputs are converted into a single CSV file with one header row. With --parallel, uncompressed
+            newline-delimited JSON is split on line boundaries and converted by all threads at once.
+
+            Options:
+              -d, --definitions <file>  .j2csv file with the root and the column definitions (required)
+              -o, --output <file>       CSV file to write (required); a name ending in .gz is gzip-compressed
+              -r, --root <path>         override the root path stored in the definitions file
+                  --null-literal        write NULL instead of an empty value for nulls
+              -p, --parallel            expand records on several threads
+                  --threads <n>         number of threads for --parallel (default: all cores)
+                  --unordered           with --parallel, do not keep the original row order
+                  --split-rows <n>      roll to output_0001.csv, output_0002.csv, ... every <n> rows
+                  --split-size <size>   roll once a file reaches <size> bytes of CSV (suffixes K, M, G)
+              -h, --help                show this help
+            """;
+
+    private File definitionsFile;
+    private File outputFile;
+    private String rootOverride;
+    private CsvNullStyles nullStyle = CsvNullStyles.EMPTY;
+    private boolean parallel;
+    private boolean ordered = true;
+    private int threads;
+    private long splitRows;
+    private long splitBytes;
+    private final List<String> inputs = new ArrayList<>();
+
+    public static void main(String[] args) {
+        Cli cli = new Cli();
+        try {
+            if (!cli.parseArguments(args)) {
+                System.out.print(USAGE);
+                return;
+            }
+        } catch (IllegalArgumentException error) {
+            System.err.println(error.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+        try {
+            cli.run();
+        } catch (Exception error) {
+            System.err.println("Conversion failed: " + error.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private boolean parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h", "--help" -> {
+                    return false;
+                }
+                case "-d", "--definitions" -> definitionsFile = new File(requireValue(args, ++i, arg));
+                case "-o", "--output" -> outputFile = new File(requireValue(args, ++i, arg));
+                case "-r", "--root" -> rootOverride = requireValue(args, ++i, arg);
+                case "--null-literal" -> nullStyle = CsvNullStyles.LITERAL_NULL;
+                case "-p", "--parallel" -> parallel = true;
+                case "--unordered" -> ordered = false;
+                case "--threads" -> {
+                    try {
+                        threads = Integer.parseInt(requireValue(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--threads expects a number");
+                    }
+                }
+                case "--split-rows" -> {
+                    try {
+                        splitRows = Long.parseLong(requireValue(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--split-rows expects a number");
+                    }
+                }
+                case "--split-size" -> splitBytes = parseSize(requireValue(args, ++i, arg), arg);
+                default -> {
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    inputs.add(arg);
+                }
+            }
+        }
+        if (definitionsFile == null || outputFile == null || inputs.isEmpty()) {
+            throw new IllegalArgumentException("A definitions file, an output file and at least one input are required.");
+        }
+        return true;
+    }
+
+    private static long parseSize(String value, String option) {
+        String digits = value.trim().toUpperCase(Locale.ROOT);
+        long unit = 1;
+        if (!digits.isEmpty()) {
+            switch (digits.charAt(digits.length() - 1)) {
+                case 'K' -> unit = 1024L;
+                case 'M' -> unit = 1024L * 1024;
+                case 'G' -> unit = 1024L * 1024 * 1024;
+                default -> {
+                }
+            }
+        }
+        if (unit > 1) {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        try {
+            return Long.parseLong(digits) * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a size such as 500M");
+        }
+    }
+
+    private static String requireValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private void run() throws Exception {
+        CsvDefinitionsBundle bundle = JsonIo.MAPPER.readValue(definitionsFile, CsvDefinitionsBundle.class);
+        List<CsvColumnDefinition> definitions = bundle.definitions() != null ? bundle.definitions() : List.of();
+        if (definitions.isEmpty()) {
+            throw new IllegalArgumentException("No column definitions found in " + definitionsFile.getName());
+        }
+        String root = rootOverride != null ? rootOverride : bundle.root();
+        List<File> files = expandInputs(inputs);
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No input files matched " + String.join(", ", inputs));
+        }
+        List<String> headers = CsvRowExpander.headersFrom(definitions);
+        ParallelOptions parallelOptions = new ParallelOptions(parallel, ordered, threads);
+        boolean loadTree = CsvRowExpander.requiresDocument(definitions);
+
+        long started = System.nanoTime();
+        long rows = 0;
+        CsvSink writer = CsvSink.open(outputFile.toPath(), nullStyle, headers, new SplitOptions(splitRows, splitBytes));
+        try (writer) {
+            for (File file : files) {
+                long fileStarted = System.nanoTime();
+                long fileRows;
+                if (loadTree) {
+                    JsonNode loadedJson = JsonIo.loadJsonFile(file);
+                    fileRows = CsvRowExpander.streamCsvRows(loadedJson, root, definitions, headers, writer, parallelOptions);
+                } else if (parallelOptions.isParallel() && NdjsonSplitter.isNdjson(file)) {
+                    fileRows = ParallelNdjsonConverter.convert(file, root, definitions, headers, writer, parallelOptions);
+                } else {
+                    fileRows = CsvRowExpander.streamCsvRows(file, root, definitions, headers, writer, parallelOptions);
+                }
+                rows += fileRows;
+                System.out.println(file.getPath() + ": " + fileRows + " rows in " + elapsedText(fileStarted));
+            }
+        }
+        long bytes = writer.bytesWritten();
+        List<Path> outputFiles = writer.files();
+        long elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        String compressed = "";
+        if (JsonIo.isGzip(outputFile)) {
+            long compressedBytes = 0;
+            for (Path outputPath : outputFiles) {
+                compressedBytes += Files.size(outputPath);
+            }
+            compressed = ", " + CustomStringUtils.makePrettySize(compressedBytes) + " compressed";
+        }
+        String target = outputFiles.size() == 1 ? outputFiles.getFirst().toString()
+                : outputFiles.size() + " files (" + outputFiles.getFirst() + " ... " + outputFiles.getLast().getFileName() + ")";
+        System.out.printf(Locale.ROOT, "Wrote %d rows (%s%s) from %d file(s) to %s in %s (%,.0f rows/s, %s)%n", rows,
+                CustomStringUtils.makePrettySize(bytes), compressed, files.size(), target,
+                CustomStringUtils.makePrettyDuration(elapsedMs), rows * 1000.0 / elapsedMs, CustomStringUtils.makePrettyThroughput(bytes, elapsedMs));
+    }
+
+    private static String elapsedText(long startedNanos) {
+        return CustomStringUtils.makePrettyDuration((System.nanoTime() - startedNanos) / 1_000_000);
+    }
+
+    static List<File> expandInputs(List<String> patterns) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (!containsGlob(pattern)) {
+                File file = new File(pattern);
+                if (!file.isFile()) {
+                    throw new IllegalArgumentException("Input file not found: " + pattern);
+                }
+                files.add(file);
+                continue;
+            }
+            String normalized = pattern.replace('\\', '/');
+            int firstGlob = firstGlobIndex(normalized);
+            int baseEnd = normalized.lastIndexOf('/', firstGlob);
+            Path baseDir = Paths.get(baseEnd < 0 ? "" : (baseEnd == 0 ? "/" : normalized.substring(0, baseEnd)));
+            String relativeGlob = normalized.substring(baseEnd + 1);
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativeGlob);
+            int maxDepth = relativeGlob.contains("**") ? Integer.MAX_VALUE : relativeGlob.split("/").length;
+            if (!Files.isDirectory(baseDir)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(baseDir, maxDepth)) {
+                paths.filter(Files::isRegularFile)
+                        .filter(path -> matcher.matches(baseDir.relativize(path)))
+                        .sorted()
+                        .forEach(path -> files.add(path.toFile()));
+            }
+        }
+        return files;
+    }
+
+    private static boolean containsGlob(String pattern) {
+        return firstGlobIndex(pattern) < pattern.length();
+    }
+
+    private static int firstGlobIndex(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return pattern.length();
+    }
+}
@@ -1,8 +1,7 @@
 package org.overb.jsontocsv.controllers;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.opencsv.CSVWriter;
-import com.opencsv.ICSVWriter;
+import javafx.animation.PauseTransition;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
@@ -14,24 +13,41 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.CheckBoxTableCell;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.input.*;
+import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import javafx.util.Duration;
 import org.overb.jsontocsv.App;
 import org.overb.jsontocsv.dto.CsvColumnDefinition;
 import org.overb.jsontocsv.dto.CsvDefinitionsBundle;
+import org.overb.jsontocsv.dto.ExportSummary;
+import org.overb.jsontocsv.dto.FileStamp;
+import org.overb.jsontocsv.dto.InferredSchema;
 import org.overb.jsontocsv.dto.JsonDragNode;
 import org.overb.jsontocsv.dto.NamedSchema;
+import org.overb.jsontocsv.dto.ParallelOptions;
+import org.overb.jsontocsv.dto.PathStats;
+import org.overb.jsontocsv.dto.RootCandidate;
+import org.overb.jsontocsv.dto.SplitOptions;
+import org.overb.jsontocsv.dto.StreamedSchema;
+import org.overb.jsontocsv.elements.ApplicationProperties;
 import org.overb.jsontocsv.elements.NamedSchemaTreeCell;
+import org.overb.jsontocsv.elements.PagedPreviewList;
 import org.overb.jsontocsv.elements.ReorderableRowFactory;
 import org.overb.jsontocsv.elements.RootValidator;
 import org.overb.jsontocsv.enums.ColumnTypes;
+import org.overb.jsontocsv.enums.CsvNullStyles;
 import org.overb.jsontocsv.enums.FileDialogTypes;
 import org.overb.jsontocsv.libs.*;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class Main {
@@ -39,8 +55,12 @@ public class Main {
     @FXML
     public TextField txtRoot;
     @FXML
+    public MenuButton btnRootCandidates;
+    @FXML
     public MenuItem mnuRefresh;
     @FXML
+    public MenuItem mnuSaveCsv;
+    @FXML
     public MenuItem mnuPreferences;
     @FXML
     public MenuItem mnuUpdate;
@@ -55,6 +75,18 @@ public class Main {
     @FXML
     private Label lblPreviewTime;
     @FXML
+    private HBox boxExport;
+    @FXML
+    private ProgressBar pbExport;
+    @FXML
+    private Label lblExportProgress;
+    @FXML
+    private HBox boxInspect;
+    @FXML
+    private ProgressBar pbInspect;
+    @FXML
+    private Label lblInspectProgress;
+    @FXML
     private TreeView<NamedSchema> tvJsonSchema;
     @FXML
     private TableView<CsvColumnDefinition> tblColumnDefinitions;
@@ -65,18 +97,39 @@ public class Main {
     @FXML
     private TableColumn<CsvColumnDefinition, Boolean> customColumn;
     @FXML
-    private TableView<Map<String, String>> tblCsvPreview;
+    private TableView<String[]> tblCsvPreview;
     @FXML
     private MenuItem mnuAddDefinition;
 
     private static final DataFormat NAMED_SCHEMA_LIST = new DataFormat("application/x-java-named-schema-list");
+    private static final int PREVIEW_DEBOUNCE_MS = 150;
+    private static final int ROOT_CANDIDATES = 8;
     private final ObservableList<CsvColumnDefinition> csvColumnDefinitions = FXCollections.observableArrayList();
     private ReorderableRowFactory<CsvColumnDefinition> reorderFactory;
     private JsonNode loadedJson;
+    private SidecarIndex loadedIndex;
+    /** The file last inspected instead of loaded, exported by streaming it; null once a file is loaded. */
+    private File inspectedFile;
+    /** Record offsets of <code>inspectedFile</code>, through which the preview reads its records. */
+    private SidecarIndex inspectedIndex;
+    private List<RootCandidate> rootCandidates;
     private JsonSchemaHelper.Schema currentSchema;
+    private Map<String, PathStats> currentStats;
     private TreeItem<NamedSchema> fullSchemaRoot;
     private Window window;
-    private Task<ObservableList<Map<String, String>>> currentPreviewTask;
+    private Task<PagedCsvRows> currentPreviewTask;
+    private ExpansionControl currentPreviewControl;
+    private final PauseTransition previewDebounce = new PauseTransition(Duration.millis(PREVIEW_DEBOUNCE_MS));
+    private final List<TableColumn<String[], String>> previewColumns = new ArrayList<>();
+    private PagedCsvRows currentPreview;
+    private List<CsvColumnDefinition> previewDefinitions = List.of();
+    private JsonNode previewJson;
+    private String previewRoot;
+    private int previewLimit;
+    private Task<ExportSummary> currentExportTask;
+    private Task<JsonSchemaHelper.Schema> currentSchemaTask;
+    private Task<StreamedSchema> currentInspectTask;
+    private ExpansionControl currentExportControl;
     private boolean definitionsChanged = false;
     private boolean closeHandlerRegistered = false;
 
@@ -89,7 +142,8 @@ public class Main {
             Preferences.show(window);
             generateCsvPreview();
         });
-        mnuRefresh.setOnAction(e -> generateCsvPreview());
+        mnuRefresh.setOnAction(e -> generateCsvPreview(true));
+        previewDebounce.setOnFinished(e -> generateCsvPreview());
         mnuUpdate.setOnAction(e -> CheckUpdates.show(window));
         tvJsonSchema.sceneProperty().addListener((observable, oldValue, newValue) -> {
             if (newValue != null) {
@@ -99,7 +153,9 @@ public class Main {
                     stage.setOnCloseRequest(evt -> {
                         if (!promptSaveIfNeeded()) {
                             evt.consume();
+                            return;
                         }
+                        cancelExport();
                     });
                 }
             }
@@ -144,7 +200,7 @@ public class Main {
             updateColumnsCounter();
             if (change.next()) {
                 definitionsChanged = true;
-                generateCsvPreview();
+                requestCsvPreview();
             }
         });
 
@@ -230,8 +286,9 @@ public class Main {
             evt.setDropCompleted(true);
             evt.consume();
         });
-        txtRoot.textProperty().addListener((obs, ov, nv) -> RootValidator.validateRootField(loadedJson, currentSchema, txtRoot));
-        RootValidator.validateRootField(loadedJson, currentSchema, txtRoot);
+        txtRoot.textProperty().addListener((obs, ov, nv) -> RootValidator.validateRootField(currentSchema, txtRoot));
+        btnRootCandidates.setOnShowing(e -> fillRootCandidates());
+        RootValidator.validateRootField(currentSchema, txtRoot);
         updateColumnsCounter();
         setPreviewCounters(0, "-");
     }
@@ -254,14 +311,14 @@ public class Main {
             EditColumn.show(window, csvColumnDefinitions, edited);
             if (!edited.equals(original)) {
                 tblColumnDefinitions.refresh();
-                generateCsvPreview();
+                requestCsvPreview();
             }
         }
     }
 
     @FXML
     private void resetDefinitions() {
-        tblCsvPreview.setItems(FXCollections.observableArrayList());
+        clearPreview("No content in table");
         csvColumnDefinitions.clear();
         if (reorderFactory != null) {
             reorderFactory.resetHistory();
@@ -276,9 +333,15 @@ public class Main {
     @FXML
     private void resetEverything() {
         resetDefinitions();
+        cancelSchemaRefine();
+        cancelInspect();
         tvJsonSchema.setRoot(null);
         fullSchemaRoot = null;
         loadedJson = null;
+        loadedIndex = null;
+        inspectedFile = null;
+        inspectedIndex = null;
+        rootCandidates = null;
         setPreviewCounters(0, "-");
     }
 
@@ -307,11 +370,106 @@ public class Main {
         loadJson(file);
     }
 
+    /**
+     * Reads the structure of a file too big to load: the schema and its statistics come from a single streaming pass,
+     * so definitions can be designed against it and the conversion then run headless.
+     */
+    @FXML
+    private void mnuInspectJsonFile() {
+        File file = UiHelper.openFileChooser(window, FileDialogTypes.LOAD, "Inspect JSON file (*.json | *.json.gz)",
+                new FileChooser.ExtensionFilter("JSON Files", "*.json", "*.json.gz"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        if (file == null) return;
+        cancelInspect();
+        final FileStamp stamp = FileStamp.of(file);
+        final long fileSize = JsonIo.isGzip(file) ? -1 : stamp.size();
+        final SidecarIndex[] index = new SidecarIndex[1];
+        final Task<StreamedSchema> task = new Task<>() {
+            @Override
+            protected StreamedSchema call() throws Exception {
+                updateProgress(-1, 1);
+                StreamedSchema streamed = StreamingSchemaBuilder.build(file, bytes -> {
+                    if (fileSize > 0) {
+                        updateProgress(bytes, fileSize);
+                    }
+                    updateMessage(CustomStringUtils.makePrettySize(bytes) + " read");
+                });
+                // the record offsets let the preview read records from disk; an index built here only lives in memory,
+                // as the index of a loaded file also holds the root detected in its tree
+                index[0] = App.properties.isIndexOpenedFiles() ? SidecarIndex.load(stamp, ApplicationProperties.getIndexDirectory()) : null;
+                if (index[0] == null && !JsonIo.isGzip(file)) {
+                    updateProgress(-1, 1);
+                    updateMessage("Indexing records");
+                    index[0] = SidecarIndex.build(stamp, streamed.schema(), null);
+                }
+                return streamed;
+            }
+        };
+        currentInspectTask = task;
+        task.setOnSucceeded(e -> {
+            finishInspect();
+            StreamedSchema streamed = task.getValue();
+            cancelSchemaRefine();
+            loadedJson = null;
+            loadedIndex = null;
+            inspectedFile = file;
+            inspectedIndex = index[0];
+            rootCandidates = null;
+            clearPreview("");
+            showJsonSchema(streamed.schema(), streamed.paths());
+            generateCsvPreview();
+            if (streamed.truncated()) {
+                UiHelper.messageBox(window, Alert.AlertType.INFORMATION, "Info",
+                        "The file has too many distinct fields; only the first ones are shown.");
+            }
+        });
+        task.setOnFailed(e -> {
+            finishInspect();
+            UiHelper.errorBox(window, (Exception) task.getException());
+        });
+        task.setOnCancelled(e -> finishInspect());
+
+        pbInspect.progressProperty().bind(task.progressProperty());
+        lblInspectProgress.textProperty().bind(task.messageProperty());
+        boxInspect.setManaged(true);
+        boxInspect.setVisible(true);
+        Thread thread = new Thread(task, "schema-inspect");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @FXML
+    private void cancelInspect() {
+        if (currentInspectTask != null) {
+            currentInspectTask.cancel();
+        }
+    }
+
+    private void finishInspect() {
+        pbInspect.progressProperty().unbind();
+        lblInspectProgress.textProperty().unbind();
+        boxInspect.setVisible(false);
+        boxInspect.setManaged(false);
+        currentInspectTask = null;
+    }
+
     private void loadJson(File file) {
+        cancelInspect();
         try {
             setControlsEnabled(false);
-            loadedJson = JsonIo.loadJsonFile(file);
-            loadJsonSchemaIntoTree();
+            boolean indexing = App.properties.isIndexOpenedFiles();
+            FileStamp stamp = FileStamp.of(file);
+            loadedIndex = indexing ? SidecarIndex.load(stamp, ApplicationProperties.getIndexDirectory()) : null;
+            loadedJson = JsonIo.loadJsonFile(file, loadedIndex);
+            inspectedFile = null;
+            inspectedIndex = null;
+            rootCandidates = null;
+            if (loadedIndex != null) {
+                cancelSchemaRefine();
+                showJsonSchema(loadedIndex.schema());
+            } else {
+                loadJsonSchemaIntoTree(indexing ? stamp : null);
+            }
             if (App.properties.isAutoConvertOnLoad() && csvColumnDefinitions.isEmpty()) {
                 parseJsonIntoCsvColumns(loadedJson);
             } else {
@@ -332,34 +490,218 @@ public class Main {
             UiHelper.messageBox(window, Alert.AlertType.INFORMATION, "Alert", "Nothing to save.");
             return;
         }
-        File file = UiHelper.openFileChooser(window, FileDialogTypes.SAVE, "SAVE CSV", new FileChooser.ExtensionFilter("CSV Files (*.csv)", "*.csv"));
+        // an inspected file is not in memory: its records are streamed from disk, which FIND formulas cannot work with
+        final File source = loadedJson == null ? inspectedFile : null;
+        if (source != null && CsvRowExpander.requiresDocument(csvColumnDefinitions)) {
+            UiHelper.messageBox(window, Alert.AlertType.INFORMATION, "Alert", "FIND formulas need the whole document, and "
+                    + source.getName() + " was only inspected. Load the file, or convert it with the command-line converter.");
+            return;
+        }
+        File file = UiHelper.openFileChooser(window, FileDialogTypes.SAVE, "SAVE CSV", new FileChooser.ExtensionFilter("CSV Files (*.csv)", "*.csv"),
+                new FileChooser.ExtensionFilter("Compressed CSV Files (*.csv.gz)", "*.csv.gz"));
         if (file == null) return;
 
-        List<String> headers = csvColumnDefinitions.stream()
-                .map(CsvColumnDefinition::getColumnName)
-                .toList();
-        setControlsEnabled(false);
-        try (CSVWriter writer = new CSVWriter(new FileWriter(file), ',', ICSVWriter.NO_QUOTE_CHARACTER, ICSVWriter.NO_ESCAPE_CHARACTER, "\n")) {
-            var rowConsumer = CsvRowConsumer.rowWriter(writer, App.properties.getNullType());
-            rowConsumer.accept(headers.toArray(new String[0]));
-            long rows = CsvRowExpander.streamCsvRows(loadedJson, txtRoot.getText(), csvColumnDefinitions, headers, rowConsumer);
-            UiHelper.messageBox(window, Alert.AlertType.INFORMATION, "Info", "Saved " + rows + " rows to " + file.getName());
-        } catch (Exception error) {
-            UiHelper.errorBox(window, error);
-        } finally {
-            setControlsEnabled(true);
+        final JsonNode json = loadedJson;
+        final String root = txtRoot.getText();
+        final List<CsvColumnDefinition> defsSnapshot = new ArrayList<>(csvColumnDefinitions);
+        final List<String> headers = CsvRowExpander.headersFrom(defsSnapshot);
+        final CsvNullStyles nullStyle = App.properties.getNullType();
+        final ParallelOptions parallel = App.properties.parallelOptions();
+        final SplitOptions split = App.properties.splitOptions();
+        final ExpansionControl control = new ExpansionControl();
+
+        Task<ExportSummary> exportTask = new Task<>() {
+            private long rows;
+            private long lastReportNanos;
+
+            @Override
+            protected ExportSummary call() throws Exception {
+                long started = System.nanoTime();
+                lastReportNanos = started;
+                updateProgress(-1, 1);
+                CsvSink writer = CsvSink.open(file.toPath(), nullStyle, headers, split);
+                Consumer<String[]> rowConsumer = row -> {
+                    writer.accept(row);
+                    if ((++rows & 1023) == 0) {
+                        reportProgress(writer, started);
+                    }
+                };
+                long written;
+                try (writer) {
+                    written = source != null
+                            ? CsvRowExpander.streamCsvRows(source, root, defsSnapshot, headers, rowConsumer, parallel, control)
+                            : CsvRowExpander.streamCsvRows(json, root, defsSnapshot, headers, rowConsumer, parallel, control);
+                } catch (Exception error) {
+                    for (Path part : writer.files()) {
+                        Files.deleteIfExists(part);
+                    }
+                    throw error;
+                }
+                return new ExportSummary(written, writer.bytesWritten(), (System.nanoTime() - started) / 1_000_000, writer.files());
+            }
+
+            private void reportProgress(CsvSink writer, long started) {
+                long now = System.nanoTime();
+                if (now - lastReportNanos < 200_000_000L) {
+                    return;
+                }
+                lastReportNanos = now;
+                long elapsedMs = Math.max(1, (now - started) / 1_000_000);
+                long done = control.recordsProcessed();
+                long total = control.totalRecords();
+                StringBuilder message = new StringBuilder();
+                if (total >= 0) {
+                    updateProgress(done, total);
+                    message.append(String.format("%,d / %,d records", done, total));
+                } else {
+                    message.append(String.format("%,d records", done));
+                }
+                message.append(" · ").append(CustomStringUtils.makePrettySize(writer.bytesWritten()))
+                        .append(" · ").append(String.format("%,.0f rows/s", rows * 1000.0 / elapsedMs));
+                if (total > 0 && done > 0) {
+                    long remainingMs = (long) ((total - done) * ((double) elapsedMs / done));
+                    message.append(" · ETA ").append(CustomStringUtils.makePrettyDuration(remainingMs));
+                }
+                updateMessage(message.toString());
+            }
+        };
+        exportTask.setOnSucceeded(e -> {
+            finishExport();
+            ExportSummary summary = exportTask.getValue();
+            String compressed = "";
+            if (JsonIo.isGzip(file)) {
+                long compressedBytes = summary.files().stream().mapToLong(part -> part.toFile().length()).sum();
+                compressed = ", " + CustomStringUtils.makePrettySize(compressedBytes) + " compressed";
+            }
+            String target = summary.files().size() == 1 ? file.getName()
+                    : summary.files().size() + " files (" + summary.files().getFirst().getFileName() + " ... " + summary.files().getLast().getFileName() + ")";
+            UiHelper.messageBox(window, Alert.AlertType.INFORMATION, "Info", "Saved " + summary.rows() + " rows ("
+                    + CustomStringUtils.makePrettySize(summary.bytes()) + compressed + ") to " + target + " in "
+                    + CustomStringUtils.makePrettyDuration(summary.elapsedMs()) + " ("
+                    + CustomStringUtils.makePrettyThroughput(summary.bytes(), summary.elapsedMs()) + ")");
+        });
+        // a cancelled export ends here too, once the worker has removed the partial files
+        exportTask.setOnFailed(e -> {
+            finishExport();
+            if (exportTask.getException() instanceof CancellationException) {
+                UiHelper.messageBox(window, Alert.AlertType.INFORMATION, "Info", "Export cancelled, " + file.getName() + " was not saved.");
+            } else {
+                UiHelper.errorBox(window, (Exception) exportTask.getException());
+            }
+        });
+
+        currentExportTask = exportTask;
+        currentExportControl = control;
+        mnuSaveCsv.setDisable(true);
+        pbExport.progressProperty().bind(exportTask.progressProperty());
+        lblExportProgress.textProperty().bind(exportTask.messageProperty());
+        boxExport.setManaged(true);
+        boxExport.setVisible(true);
+        new Thread(exportTask, "csv-export").start();
+    }
+
+    /**
+     * Asks the running export to stop. The task itself is not cancelled: it fails with a cancellation once the worker
+     * has stopped and cleaned up, so Save stays disabled until then.
+     */
+    @FXML
+    private void cancelExport() {
+        if (currentExportTask == null || !currentExportTask.isRunning()) {
+            return;
         }
+        currentExportControl.cancel();
+    }
+
+    private void finishExport() {
+        pbExport.progressProperty().unbind();
+        lblExportProgress.textProperty().unbind();
+        boxExport.setVisible(false);
+        boxExport.setManaged(false);
+        mnuSaveCsv.setDisable(false);
+        currentExportTask = null;
+        currentExportControl = null;
     }
 
-    private void loadJsonSchemaIntoTree() {
-        currentSchema = JsonSchemaService.buildJsonSchema(loadedJson);
-        TreeItem<NamedSchema> rootItem = toTreeItem("", currentSchema);
+    /**
+     * Shows the schema inferred from <code>loadedJson</code>; a sampled schema is refined in the background, where
+     * the file of <code>indexFile</code>, when given, is also indexed for the next time it is opened.
+     */
+    private void loadJsonSchemaIntoTree(FileStamp indexFile) {
+        cancelSchemaRefine();
+        InferredSchema inferred = JsonSchemaService.inferJsonSchema(loadedJson, App.properties.getSchemaInference(),
+                App.properties.getSchemaSampleSize());
+        showJsonSchema(inferred.schema());
+        if (!inferred.complete() || indexFile != null) {
+            refineJsonSchema(loadedJson, inferred, indexFile);
+        }
+    }
+
+    private void showJsonSchema(JsonSchemaHelper.Schema schema) {
+        showJsonSchema(schema, null);
+    }
+
+    private void showJsonSchema(JsonSchemaHelper.Schema schema, Map<String, PathStats> stats) {
+        currentSchema = schema;
+        currentStats = stats;
+        TreeItem<NamedSchema> rootItem = toTreeItem("", currentSchema, "");
         fullSchemaRoot = rootItem;
         tvJsonSchema.setRoot(rootItem);
         expandAll(rootItem);
         applySchemaFilter();
     }
 
+    /**
+     * Replaces the sampled schema with one built from every element, once that is done on a worker thread, and writes
+     * the index of the file of <code>indexFile</code> when given, unless the file changed since it was loaded.
+     */
+    private void refineJsonSchema(JsonNode json, InferredSchema inferred, FileStamp indexFile) {
+        final String root = indexFile == null ? null : suggestedRoot().orElse(null);
+        final Task<JsonSchemaHelper.Schema> task = new Task<>() {
+            @Override
+            protected JsonSchemaHelper.Schema call() {
+                JsonSchemaHelper.Schema schema = inferred.complete() ? inferred.schema() : JsonSchemaService.buildJsonSchema(json);
+                if (indexFile != null) {
+                    try {
+                        SidecarIndex index = SidecarIndex.build(indexFile, schema, root);
+                        if (index != null) {
+                            index.save(ApplicationProperties.getIndexDirectory());
+                        }
+                    } catch (IOException ignore) {
+                        // the file is simply indexed again the next time it is opened
+                    }
+                }
+                return schema;
+            }
+        };
+        currentSchemaTask = task;
+        task.setOnSucceeded(e -> {
+            if (task != currentSchemaTask || json != loadedJson) {
+                return;
+            }
+            currentSchemaTask = null;
+            if (task.getValue() != currentSchema) {
+                showJsonSchema(task.getValue());
+                RootValidator.validateRootField(currentSchema, txtRoot);
+            }
+        });
+        // on failure the sampled schema simply stays
+        task.setOnFailed(e -> {
+            if (task == currentSchemaTask) {
+                currentSchemaTask = null;
+            }
+        });
+        Thread thread = new Thread(task, "schema-refine");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void cancelSchemaRefine() {
+        if (currentSchemaTask != null) {
+            currentSchemaTask.cancel();
+            currentSchemaTask = null;
+        }
+    }
+
     private void expandAll(TreeItem<?> root) {
         if (root == null) {
             return;
@@ -375,18 +717,25 @@ public class Main {
         tblCsvPreview.setDisable(!enabled);
         tvJsonSchema.setDisable(!enabled);
         txtRoot.setDisable(!enabled);
+        btnRootCandidates.setDisable(!enabled);
     }
 
-    private TreeItem<NamedSchema> toTreeItem(String name, JsonSchemaHelper.Schema schema) {
+    /**
+     * <code>path</code> names the node in the statistics of an inspected file: dotted, with <code>[]</code> for the
+     * elements of an array.
+     */
+    private TreeItem<NamedSchema> toTreeItem(String name, JsonSchemaHelper.Schema schema, String path) {
         TreeItem<NamedSchema> item;
+        PathStats stats = currentStats == null ? null : currentStats.get(path);
         if (schema instanceof JsonSchemaHelper.ArraySchema arr) {
-            item = new TreeItem<>(new NamedSchema(name, schema));
-            item.getChildren().add(toTreeItem("", arr.elementSchema));
+            item = new TreeItem<>(new NamedSchema(name, schema, stats));
+            item.getChildren().add(toTreeItem("", arr.elementSchema, path + "[]"));
         } else if (schema instanceof JsonSchemaHelper.ObjectSchema obj) {
-            item = new TreeItem<>(new NamedSchema(name, schema));
-            obj.fields.forEach((fieldName, subSchema) -> item.getChildren().add(toTreeItem(fieldName, subSchema)));
+            item = new TreeItem<>(new NamedSchema(name, schema, stats));
+            obj.fields.forEach((fieldName, subSchema) -> item.getChildren().add(
+                    toTreeItem(fieldName, subSchema, path.isEmpty() ? fieldName : path + "." + fieldName)));
         } else {
-            item = new TreeItem<>(new NamedSchema(name, schema));
+            item = new TreeItem<>(new NamedSchema(name, schema, stats));
         }
         if ((item.getValue() == null || item.getValue().name().isEmpty()) && (item.getChildren() == null || item.getChildren().isEmpty())) {
             return null;
@@ -398,7 +747,8 @@ public class Main {
         if (JsonSchemaService.isShallow(rootNode)) {
             loadSimpleJson(rootNode);
         } else if (csvColumnDefinitions.isEmpty()) {
-            Optional<String> recommendedRoot = JsonRootDetector.detectSuggestedRoot(loadedJson);
+            Optional<String> recommendedRoot = loadedIndex != null ? Optional.ofNullable(loadedIndex.root())
+                    : suggestedRoot();
             if (recommendedRoot.isPresent()) {
                 txtRoot.setText(recommendedRoot.get());
                 loadSimpleJson(JsonPath.navigate(rootNode, recommendedRoot.get()));
@@ -412,7 +762,55 @@ public class Main {
                 UiHelper.messageBox(window, Alert.AlertType.INFORMATION, "Info",
                         "Unable to automatically detect the data root in the nested JSON.");
             }
-            RootValidator.validateRootField(loadedJson, currentSchema, txtRoot);
+            RootValidator.validateRootField(currentSchema, txtRoot);
+        }
+        generateCsvPreview();
+    }
+
+    /**
+     * The arrays of <code>loadedJson</code> that could hold the rows, best first; ranked once per loaded document.
+     */
+    private List<RootCandidate> rootCandidates() {
+        if (rootCandidates == null) {
+            rootCandidates = loadedJson == null ? List.of() : JsonRootDetector.rankCandidates(loadedJson, ROOT_CANDIDATES);
+        }
+        return rootCandidates;
+    }
+
+    private Optional<String> suggestedRoot() {
+        return rootCandidates().stream().findFirst().map(RootCandidate::path);
+    }
+
+    private void fillRootCandidates() {
+        btnRootCandidates.getItems().clear();
+        List<RootCandidate> candidates = rootCandidates();
+        if (candidates.isEmpty()) {
+            MenuItem none = new MenuItem(loadedJson == null ? "No JSON file loaded" : "No arrays found");
+            none.setDisable(true);
+            btnRootCandidates.getItems().add(none);
+            return;
+        }
+        for (RootCandidate candidate : candidates) {
+            String path = candidate.path().isEmpty() ? "(document)" : candidate.path();
+            MenuItem item = new MenuItem(String.format("%s  -  %,d elements, %d columns, score %.2f", path,
+                    candidate.size(), candidate.columnCount(), candidate.score()));
+            item.setMnemonicParsing(false);
+            item.setOnAction(e -> applyRootCandidate(candidate));
+            btnRootCandidates.getItems().add(item);
+        }
+    }
+
+    /**
+     * Makes <code>candidate</code> the root; without column definitions yet, its fields become the columns.
+     */
+    private void applyRootCandidate(RootCandidate candidate) {
+        txtRoot.setText(candidate.path().isEmpty() ? null : candidate.path());
+        if (csvColumnDefinitions.isEmpty()) {
+            try {
+                loadSimpleJson(JsonPath.navigate(loadedJson, candidate.path()));
+            } catch (Exception error) {
+                UiHelper.errorBox(window, error);
+            }
         }
         generateCsvPreview();
     }
@@ -451,68 +849,168 @@ public class Main {
         return uniqueColumn;
     }
 
+    /**
+     * Schedules a preview refresh; bursts of definition edits collapse into a single one.
+     */
+    private void requestCsvPreview() {
+        previewDebounce.playFromStart();
+    }
+
     private void generateCsvPreview() {
-        if (loadedJson == null) {
+        generateCsvPreview(false);
+    }
+
+    private void generateCsvPreview(boolean forceFull) {
+        previewDebounce.stop();
+        if (loadedJson == null && inspectedFile == null) {
             setPreviewCounters(0, "-");
             return;
         }
-        RootValidator.validateRootField(loadedJson, currentSchema, txtRoot);
+        RootValidator.validateRootField(currentSchema, txtRoot);
         if (csvColumnDefinitions.isEmpty()) {
-            tblCsvPreview.getColumns().clear();
-            tblCsvPreview.setItems(FXCollections.observableArrayList());
-            tblCsvPreview.setPlaceholder(new Label("No columns"));
+            clearPreview("No columns");
             setPreviewCounters(0, "-");
             return;
         }
-        tblCsvPreview.getColumns().clear();
-        for (CsvColumnDefinition def : csvColumnDefinitions) {
-            TableColumn<Map<String, String>, String> col = new TableColumn<>(def.getColumnName());
-            col.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().get(def.getColumnName())));
-            col.setReorderable(false);
-            tblCsvPreview.getColumns().add(col);
-        }
         final String root = txtRoot.getText();
-        final List<CsvColumnDefinition> defsSnapshot = new ArrayList<>(csvColumnDefinitions);
+        final List<CsvColumnDefinition> defsSnapshot = csvColumnDefinitions.stream().map(CsvColumnDefinition::new).toList();
+        // an inspected file is previewed from its top-level records, read from disk through its index
+        final File file = loadedJson == null ? inspectedFile : null;
+        final SidecarIndex index = inspectedIndex;
+        if (file != null) {
+            String unavailable = null;
+            if (index == null || index.recordCount() == 0 || CompiledPath.of(root).depth() > 0) {
+                unavailable = "Inspected file, only its top-level records can be previewed";
+            } else if (CsvRowExpander.requiresDocument(defsSnapshot)) {
+                unavailable = "Inspected file, FIND formulas need the loaded document";
+            }
+            if (unavailable != null) {
+                clearPreview(unavailable);
+                setPreviewCounters(0, "-");
+                return;
+            }
+        }
         final int limit = App.properties.isLimitedPreviewRows() ? App.properties.getPreviewLimit() : 0;
-        if (currentPreviewTask != null && currentPreviewTask.isRunning()) {
-            currentPreviewTask.cancel();
+        long lastPreviewStartNanos = System.nanoTime();
+
+        boolean previewRunning = currentPreviewTask != null && currentPreviewTask.isRunning();
+        if (!forceFull && !previewRunning && currentPreview != null && previewJson == loadedJson
+                && Objects.equals(previewRoot, root) && previewLimit == limit) {
+            PreviewUpdate update = PreviewUpdate.between(previewDefinitions, defsSnapshot, currentPreview.fannedOut());
+            if (update != null) {
+                applyPreviewUpdate(update, defsSnapshot);
+                setPreviewCounters(currentPreview.size(), (System.nanoTime() - lastPreviewStartNanos) / 1_000_000 + " ms");
+                return;
+            }
+        }
+
+        previewColumns.clear();
+        for (int i = 0; i < defsSnapshot.size(); i++) {
+            previewColumns.add(newPreviewColumn(defsSnapshot.get(i).getColumnName(), i));
         }
+        tblCsvPreview.getColumns().setAll(previewColumns);
+        cancelPreviewTask();
+        currentPreview = null;
         tblCsvPreview.setPlaceholder(new ProgressIndicator());
-        long lastPreviewStartNanos = System.nanoTime();
         setPreviewCounters(0, "…");
 
-        currentPreviewTask = new Task<>() {
+        final JsonNode json = loadedJson;
+        final ExpansionControl control = new ExpansionControl();
+        currentPreviewControl = control;
+        final Task<PagedCsvRows> task = new Task<>() {
             @Override
-            protected ObservableList<Map<String, String>> call() {
-                return CsvRowExpander.previewCsvRows(loadedJson, root, defsSnapshot, limit);
+            protected PagedCsvRows call() throws IOException {
+                return file != null ? PagedCsvRows.index(file, index, defsSnapshot, limit, control)
+                        : PagedCsvRows.index(json, root, defsSnapshot, limit, control);
             }
         };
-        currentPreviewTask.setOnSucceeded(e -> {
-            ObservableList<Map<String, String>> rows = currentPreviewTask.getValue();
-            if (rows == null) {
-                rows = FXCollections.observableArrayList();
-            }
-            tblCsvPreview.setItems(rows);
+        currentPreviewTask = task;
+        task.setOnSucceeded(e -> {
+            PagedCsvRows preview = task.getValue();
+            currentPreview = preview;
+            previewDefinitions = defsSnapshot;
+            previewJson = json;
+            previewRoot = root;
+            previewLimit = limit;
+            tblCsvPreview.setItems(new PagedPreviewList(preview));
             long elapsedMs = Math.max(0, (System.nanoTime() - lastPreviewStartNanos) / 1_000_000);
-            int rowCount = rows.size();
+            int rowCount = preview.size();
             tblCsvPreview.setPlaceholder(rowCount == 0 ? new Label("No rows") : new Label(""));
             setPreviewCounters(rowCount, elapsedMs + " ms");
         });
 
-        currentPreviewTask.setOnFailed(e -> {
-            UiHelper.errorBox(window, (Exception) currentPreviewTask.getException());
+        task.setOnFailed(e -> {
+            UiHelper.errorBox(window, (Exception) task.getException());
             tblCsvPreview.setItems(FXCollections.observableArrayList()); // ensure list present
             tblCsvPreview.setPlaceholder(new Label("Error"));
             setPreviewCounters(0, "error");
         });
 
-        currentPreviewTask.setOnCancelled(e -> {
+        task.setOnCancelled(e -> {
+            if (task != currentPreviewTask) {
+                return; // superseded by a newer preview that is already running
+            }
             tblCsvPreview.setItems(FXCollections.observableArrayList()); // ensure list present
             tblCsvPreview.setPlaceholder(new Label("Cancelled"));
             setPreviewCounters(0, "cancelled");
         });
 
-        new Thread(currentPreviewTask, "preview-builder").start();
+        new Thread(task, "preview-builder").start();
+    }
+
+    /**
+     * Carries the current preview over to the edited definitions without indexing the records again: columns that keep
+     * their values keep their table column (and width), and only the visible pages are expanded anew.
+     */
+    private void applyPreviewUpdate(PreviewUpdate update, List<CsvColumnDefinition> definitions) {
+        List<TableColumn<String[], String>> previousColumns = new ArrayList<>(previewColumns);
+        previewColumns.clear();
+        for (int i = 0; i < definitions.size(); i++) {
+            int source = update.source(i);
+            TableColumn<String[], String> column = source >= 0 && source < previousColumns.size()
+                    ? previousColumns.get(source)
+                    : newPreviewColumn(definitions.get(i).getColumnName(), i);
+            column.setText(definitions.get(i).getColumnName());
+            column.setUserData(i);
+            previewColumns.add(column);
+        }
+        previewDefinitions = definitions;
+        tblCsvPreview.getColumns().setAll(previewColumns);
+        if (!update.headersOnly()) {
+            currentPreview = currentPreview.withDefinitions(definitions);
+            tblCsvPreview.setItems(new PagedPreviewList(currentPreview));
+        }
+    }
+
+    private static TableColumn<String[], String> newPreviewColumn(String name, int slot) {
+        TableColumn<String[], String> column = new TableColumn<>(name);
+        column.setUserData(slot);
+        column.setCellValueFactory(cell -> {
+            int index = (Integer) cell.getTableColumn().getUserData();
+            String[] row = cell.getValue();
+            return new SimpleStringProperty(index < row.length ? row[index] : null);
+        });
+        column.setReorderable(false);
+        // rows are expanded page by page on demand, sorting would need all of them
+        column.setSortable(false);
+        return column;
+    }
+
+    private void cancelPreviewTask() {
+        if (currentPreviewTask != null && currentPreviewTask.isRunning()) {
+            currentPreviewControl.cancel();
+            currentPreviewTask.cancel();
+        }
+    }
+
+    private void clearPreview(String placeholder) {
+        cancelPreviewTask();
+        currentPreview = null;
+        previewDefinitions = List.of();
+        previewColumns.clear();
+        tblCsvPreview.getColumns().clear();
+        tblCsvPreview.setItems(FXCollections.observableArrayList());
+        tblCsvPreview.setPlaceholder(new Label(placeholder));
     }
 
     public void mnuLoadCsvDefinitions(ActionEvent actionEvent) {
@@ -15,6 +15,7 @@ import javafx.stage.Window;
 import org.overb.jsontocsv.App;
 import org.overb.jsontocsv.elements.ApplicationProperties;
 import org.overb.jsontocsv.enums.CsvNullStyles;
+import org.overb.jsontocsv.enums.SchemaInferenceModes;
 import org.overb.jsontocsv.libs.ThemeManager;
 import org.overb.jsontocsv.libs.UiHelper;
 
@@ -38,6 +39,30 @@ public class Preferences {
     public RadioButton cbNullNull;
     @FXML
     public CheckBox cbDarkMode;
+    @FXML
+    public CheckBox cbParallelExport;
+    @FXML
+    public TextField txtThreads;
+    @FXML
+    public CheckBox cbParallelOrdered;
+    @FXML
+    public CheckBox cbSplitExport;
+    @FXML
+    public TextField txtSplitRows;
+    @FXML
+    public TextField txtSplitSize;
+    @FXML
+    public ToggleGroup toggleSchemaInferenceGroup;
+    @FXML
+    public RadioButton cbSchemaReservoir;
+    @FXML
+    public RadioButton cbSchemaFirst;
+    @FXML
+    public RadioButton cbSchemaFull;
+    @FXML
+    public TextField txtSchemaSample;
+    @FXML
+    public CheckBox cbIndexFiles;
     private Stage dialogStage;
 
     public void initialize() {
@@ -55,10 +80,39 @@ public class Preferences {
             cbNullNull.setSelected(true);
         }
         cbDarkMode.setSelected(App.properties.isDarkMode());
+        cbParallelExport.setSelected(App.properties.isParallelExport());
+        txtThreads.setText("" + App.properties.getParallelThreads());
+        cbParallelOrdered.setSelected(App.properties.isParallelOrderedOutput());
+        txtThreads.setDisable(!cbParallelExport.isSelected());
+        cbParallelOrdered.setDisable(!cbParallelExport.isSelected());
+        cbSplitExport.setSelected(App.properties.isSplitExport());
+        txtSplitRows.setText("" + App.properties.getSplitRows());
+        txtSplitSize.setText("" + App.properties.getSplitSizeMb());
+        txtSplitRows.setDisable(!cbSplitExport.isSelected());
+        txtSplitSize.setDisable(!cbSplitExport.isSelected());
+        switch (App.properties.getSchemaInference()) {
+            case FULL -> cbSchemaFull.setSelected(true);
+            case FIRST_N -> cbSchemaFirst.setSelected(true);
+            case null, default -> cbSchemaReservoir.setSelected(true);
+        }
+        txtSchemaSample.setText("" + App.properties.getSchemaSampleSize());
+        txtSchemaSample.setDisable(cbSchemaFull.isSelected());
+        cbIndexFiles.setSelected(App.properties.isIndexOpenedFiles());
 
         cbLimitPreview.setOnAction(event -> {
             txtLimit.setDisable(!cbLimitPreview.isSelected());
         });
+        cbParallelExport.setOnAction(event -> {
+            txtThreads.setDisable(!cbParallelExport.isSelected());
+            cbParallelOrdered.setDisable(!cbParallelExport.isSelected());
+        });
+        cbSplitExport.setOnAction(event -> {
+            txtSplitRows.setDisable(!cbSplitExport.isSelected());
+            txtSplitSize.setDisable(!cbSplitExport.isSelected());
+        });
+        toggleSchemaInferenceGroup.selectedToggleProperty().addListener((obs, ov, nv) -> {
+            txtSchemaSample.setDisable(cbSchemaFull.isSelected());
+        });
     }
 
     @FXML
@@ -77,6 +131,44 @@ public class Preferences {
             App.properties.setPreviewLimit(limit);
             App.properties.setNullType(cbNullEmpty.isSelected() ? CsvNullStyles.EMPTY : CsvNullStyles.LITERAL_NULL);
             App.properties.setDarkMode(cbDarkMode.isSelected());
+            App.properties.setParallelExport(cbParallelExport.isSelected());
+            App.properties.setParallelOrderedOutput(cbParallelOrdered.isSelected());
+            int threads;
+            try {
+                threads = Math.max(0, Integer.parseInt(txtThreads.getText()));
+            } catch (NumberFormatException e) {
+                threads = 0;
+                txtThreads.setText("0");
+            }
+            App.properties.setParallelThreads(threads);
+            App.properties.setSplitExport(cbSplitExport.isSelected());
+            long splitRows;
+            try {
+                splitRows = Math.max(0, Long.parseLong(txtSplitRows.getText()));
+            } catch (NumberFormatException e) {
+                splitRows = 0;
+                txtSplitRows.setText("0");
+            }
+            App.properties.setSplitRows(splitRows);
+            long splitSize;
+            try {
+                splitSize = Math.max(0, Long.parseLong(txtSplitSize.getText()));
+            } catch (NumberFormatException e) {
+                splitSize = 0;
+                txtSplitSize.setText("0");
+            }
+            App.properties.setSplitSizeMb(splitSize);
+            App.properties.setSchemaInference(cbSchemaFull.isSelected() ? SchemaInferenceModes.FULL
+                    : cbSchemaFirst.isSelected() ? SchemaInferenceModes.FIRST_N : SchemaInferenceModes.RESERVOIR);
+            int sampleSize;
+            try {
+                sampleSize = Math.max(1, Integer.parseInt(txtSchemaSample.getText()));
+            } catch (NumberFormatException e) {
+                sampleSize = 1000;
+                txtSchemaSample.setText("1000");
+            }
+            App.properties.setSchemaSampleSize(sampleSize);
+            App.properties.setIndexOpenedFiles(cbIndexFiles.isSelected());
             App.properties.save();
         } catch (Exception error) {
             UiHelper.errorBox(dialogStage, error);
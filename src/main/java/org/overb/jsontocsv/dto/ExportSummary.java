@@ -0,0 +1,7 @@
+package org.overb.jsontocsv.dto;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public record ExportSummary(long rows, long bytes, long elapsedMs, List<Path> files) {
+}
@@ -0,0 +1,18 @@
+package org.overb.jsontocsv.dto;
+
+import java.io.File;
+
+/**
+ * A file with the size and modification time it had when it was read; what was learned from reading it only holds
+ * while the file still has them.
+ */
+public record FileStamp(File file, long size, long modified) {
+
+    public static FileStamp of(File file) {
+        return new FileStamp(file, file.length(), file.lastModified());
+    }
+
+    public boolean isCurrent() {
+        return file.length() == size && file.lastModified() == modified;
+    }
+}
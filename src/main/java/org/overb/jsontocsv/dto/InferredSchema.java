@@ -0,0 +1,9 @@
+package org.overb.jsontocsv.dto;
+
+import org.overb.jsontocsv.libs.JsonSchemaHelper;
+
+/**
+ * A schema and whether it was inferred from every array element; when not, some elements were left out of the sample.
+ */
+public record InferredSchema(JsonSchemaHelper.Schema schema, boolean complete) {
+}
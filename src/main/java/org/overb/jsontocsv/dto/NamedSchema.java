@@ -2,7 +2,11 @@ package org.overb.jsontocsv.dto;
 
 import org.overb.jsontocsv.libs.JsonSchemaHelper;
 
-public record NamedSchema(String name, JsonSchemaHelper.Schema schema) {
+public record NamedSchema(String name, JsonSchemaHelper.Schema schema, PathStats stats) {
+
+    public NamedSchema(String name, JsonSchemaHelper.Schema schema) {
+        this(name, schema, null);
+    }
 
     @Override
     public String toString() {
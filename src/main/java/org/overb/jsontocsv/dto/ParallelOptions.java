@@ -0,0 +1,14 @@
+package org.overb.jsontocsv.dto;
+
+public record ParallelOptions(boolean enabled, boolean ordered, int threads) {
+
+    public static final ParallelOptions SEQUENTIAL = new ParallelOptions(false, true, 1);
+
+    public int effectiveThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public boolean isParallel() {
+        return enabled && effectiveThreads() > 1;
+    }
+}
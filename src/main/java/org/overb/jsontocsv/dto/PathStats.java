@@ -0,0 +1,16 @@
+package org.overb.jsontocsv.dto;
+
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+
+import java.util.Map;
+
+/**
+ * What a streaming pass saw at one path: how many values, out of how many parents that could have held one (objects
+ * for a field, arrays for their elements), the value types and the longest array.
+ */
+public record PathStats(long count, long parentCount, Map<JsonNodeType, Long> types, long maxArrayLength) {
+
+    public double presence() {
+        return parentCount == 0 ? 0 : (double) count / parentCount;
+    }
+}
@@ -0,0 +1,8 @@
+package org.overb.jsontocsv.dto;
+
+/**
+ * An array that could hold the rows of the CSV, as ranked by the root detector: its dot-path (empty for the document
+ * itself), its score, its length and how many distinct fields its sampled elements have.
+ */
+public record RootCandidate(String path, double score, int size, int columnCount) {
+}
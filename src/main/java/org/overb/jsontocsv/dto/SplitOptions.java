@@ -0,0 +1,10 @@
+package org.overb.jsontocsv.dto;
+
+public record SplitOptions(long maxRows, long maxBytes) {
+
+    public static final SplitOptions NONE = new SplitOptions(0, 0);
+
+    public boolean isEnabled() {
+        return maxRows > 0 || maxBytes > 0;
+    }
+}
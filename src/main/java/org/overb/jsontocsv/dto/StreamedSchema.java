@@ -0,0 +1,13 @@
+package org.overb.jsontocsv.dto;
+
+import org.overb.jsontocsv.libs.JsonSchemaHelper;
+
+import java.util.Map;
+
+/**
+ * Schema of a file read as a token stream, with the statistics of every path. Paths are dotted, and array elements
+ * add <code>[]</code> to the path of their array (<code>orders[].id</code>). <code>truncated</code> is set when the
+ * file had more distinct paths than are tracked, so some fields were left out.
+ */
+public record StreamedSchema(JsonSchemaHelper.Schema schema, Map<String, PathStats> paths, boolean truncated) {
+}
@@ -5,7 +5,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.overb.jsontocsv.dto.ParallelOptions;
+import org.overb.jsontocsv.dto.SplitOptions;
 import org.overb.jsontocsv.enums.CsvNullStyles;
+import org.overb.jsontocsv.enums.SchemaInferenceModes;
 import org.overb.jsontocsv.libs.JsonIo;
 import org.overb.jsontocsv.libs.ThemeManager;
 
@@ -41,6 +44,33 @@ public class ApplicationProperties {
     @JsonProperty("dark_mode")
     private boolean darkMode;
 
+    @JsonProperty("parallel_export")
+    private boolean parallelExport;
+
+    @JsonProperty("parallel_ordered_output")
+    private boolean parallelOrderedOutput = true;
+
+    @JsonProperty("parallel_threads")
+    private int parallelThreads;
+
+    @JsonProperty("split_export")
+    private boolean splitExport;
+
+    @JsonProperty("split_rows")
+    private long splitRows;
+
+    @JsonProperty("split_size_mb")
+    private long splitSizeMb;
+
+    @JsonProperty("schema_inference")
+    private SchemaInferenceModes schemaInference = SchemaInferenceModes.RESERVOIR;
+
+    @JsonProperty("schema_sample_size")
+    private int schemaSampleSize = 1000;
+
+    @JsonProperty("index_opened_files")
+    private boolean indexOpenedFiles = true;
+
     @JsonProperty("recent_files")
     private List<String> recentFiles = new ArrayList<>();
 
@@ -67,6 +97,14 @@ public class ApplicationProperties {
         }
     }
 
+    public ParallelOptions parallelOptions() {
+        return new ParallelOptions(parallelExport, parallelOrderedOutput, parallelThreads);
+    }
+
+    public SplitOptions splitOptions() {
+        return splitExport ? new SplitOptions(splitRows, splitSizeMb * 1024 * 1024) : SplitOptions.NONE;
+    }
+
     public void addRecentFile(String path) {
         if (path == null) return;
         recentFiles.remove(path);
@@ -96,7 +134,7 @@ public class ApplicationProperties {
         }
     }
 
-    private static Path getConfigPath() throws IOException {
+    private static Path getConfigDirectory() throws IOException {
         Path configDir = Paths.get(
                 System.getProperty("os.name").toLowerCase().contains("win")
                         ? System.getenv("APPDATA")
@@ -104,7 +142,18 @@ public class ApplicationProperties {
                 "org.overb.JsonToCsv"
         );
         Files.createDirectories(configDir);
-        return configDir.resolve("settings.json");
+        return configDir;
+    }
+
+    private static Path getConfigPath() throws IOException {
+        return getConfigDirectory().resolve("settings.json");
+    }
+
+    /**
+     * Where the schema and record indexes of opened files are kept.
+     */
+    public static Path getIndexDirectory() throws IOException {
+        return getConfigDirectory().resolve("index");
     }
 
     public static ApplicationProperties load() {
@@ -128,6 +177,15 @@ public class ApplicationProperties {
         defaultProperties.setPreviewLimit(100);
         defaultProperties.setNullType(CsvNullStyles.EMPTY);
         defaultProperties.setDarkMode(false);
+        defaultProperties.setParallelExport(false);
+        defaultProperties.setParallelOrderedOutput(true);
+        defaultProperties.setParallelThreads(0);
+        defaultProperties.setSplitExport(false);
+        defaultProperties.setSplitRows(1_000_000);
+        defaultProperties.setSplitSizeMb(0);
+        defaultProperties.setSchemaInference(SchemaInferenceModes.RESERVOIR);
+        defaultProperties.setSchemaSampleSize(1000);
+        defaultProperties.setIndexOpenedFiles(true);
         return defaultProperties;
     }
 }
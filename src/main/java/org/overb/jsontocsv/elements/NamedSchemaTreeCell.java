@@ -1,9 +1,14 @@
 package org.overb.jsontocsv.elements;
 
 import javafx.scene.control.TreeCell;
+import javafx.scene.control.Tooltip;
 import org.overb.jsontocsv.dto.NamedSchema;
+import org.overb.jsontocsv.dto.PathStats;
 import org.overb.jsontocsv.libs.JsonSchemaHelper;
 
+import java.util.Locale;
+import java.util.stream.Collectors;
+
 public class NamedSchemaTreeCell extends TreeCell<NamedSchema> {
 
     @Override
@@ -11,6 +16,7 @@ public class NamedSchemaTreeCell extends TreeCell<NamedSchema> {
         super.updateItem(ns, empty);
         if (empty || ns == null) {
             setText(null);
+            setTooltip(null);
             return;
         }
         String typeHint = switch (ns.schema()) {
@@ -19,5 +25,18 @@ public class NamedSchemaTreeCell extends TreeCell<NamedSchema> {
             default -> "";
         };
         setText(ns.name() + typeHint);
+        setTooltip(ns.stats() == null ? null : new Tooltip(describe(ns.stats())));
+    }
+
+    private static String describe(PathStats stats) {
+        String types = stats.types().entrySet().stream()
+                .map(type -> String.format(Locale.ROOT, "%s %,d", type.getKey().name().toLowerCase(Locale.ROOT), type.getValue()))
+                .collect(Collectors.joining(", "));
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT, "Present in %,d of %,d (%.1f%%)\nTypes: %s",
+                stats.count(), stats.parentCount(), stats.presence() * 100, types));
+        if (stats.maxArrayLength() > 0) {
+            text.append(String.format(Locale.ROOT, "\nLongest array: %,d", stats.maxArrayLength()));
+        }
+        return text.toString();
     }
 }
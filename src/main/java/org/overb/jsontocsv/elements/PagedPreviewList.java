@@ -0,0 +1,27 @@
+package org.overb.jsontocsv.elements;
+
+import javafx.collections.ObservableListBase;
+import org.overb.jsontocsv.libs.PagedCsvRows;
+
+/**
+ * Read-only list view over {@link PagedCsvRows} for the preview table: the table only asks for the rows it shows, so
+ * only those pages are ever expanded. It never changes; a new preview installs a new list.
+ */
+public class PagedPreviewList extends ObservableListBase<String[]> {
+
+    private final PagedCsvRows rows;
+
+    public PagedPreviewList(PagedCsvRows rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public String[] get(int index) {
+        return rows.get(index);
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+}
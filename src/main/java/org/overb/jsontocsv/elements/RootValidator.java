@@ -1,11 +1,9 @@
 package org.overb.jsontocsv.elements;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Tooltip;
 import org.overb.jsontocsv.libs.JsonSchemaHelper;
 
-import java.util.Arrays;
 import java.util.Optional;
 
 public class RootValidator {
@@ -14,11 +12,11 @@ public class RootValidator {
         OK_ARRAY, NOT_FOUND, NOT_ARRAY, NO_JSON, EMPTY
     }
 
-    public static void validateRootField(JsonNode loadedJson, JsonSchemaHelper.Schema currentSchema, TextField txtRoot) {
+    public static void validateRootField(JsonSchemaHelper.Schema currentSchema, TextField txtRoot) {
         String styleOk = "";
         String styleError = "-fx-border-color: #d33; -fx-border-width: 1; -fx-background-color: -fx-control-inner-background;";
         Tooltip tip;
-        if (loadedJson == null || currentSchema == null) {
+        if (currentSchema == null) {
             txtRoot.setStyle(styleOk);
             tip = new Tooltip("Load a JSON file to validate the Root path.");
             txtRoot.setTooltip(tip);
@@ -72,12 +70,13 @@ public class RootValidator {
         if (path == null || path.isBlank()) {
             return new ValidationResult(RootValidationResults.EMPTY, null);
         }
-        String[] parts = Arrays.stream(path.split("\\."))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .toArray(String[]::new);
+        // split locally: text typed so far must not end up in the shared cache of compiled paths
         JsonSchemaHelper.Schema node = currentSchema;
-        for (String part : parts) {
+        for (String segment : path.split("\\.")) {
+            String part = segment.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
             if (node instanceof JsonSchemaHelper.ObjectSchema obj) {
                 JsonSchemaHelper.Schema next = obj.fields.get(part);
                 if (next == null) {
@@ -2,6 +2,10 @@ package org.overb.jsontocsv.enums;
 
 import lombok.Getter;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 public enum CustomFunctions {
     CURRENT_TIMESTAMP("current_timestamp", 0),
     FIND("find", 3),
@@ -9,6 +13,14 @@ public enum CustomFunctions {
     JSON("json", 1),
     UNKNOWN("unknown", 0);
 
+    private static final Map<String, CustomFunctions> BY_NAME = new HashMap<>();
+
+    static {
+        for (CustomFunctions customFunction : values()) {
+            BY_NAME.put(customFunction.function, customFunction);
+        }
+    }
+
     @Getter
     private final String function;
     @Getter
@@ -20,11 +32,7 @@ public enum CustomFunctions {
     }
 
     public static CustomFunctions fromName(String functionName) {
-        for (CustomFunctions customFunction : CustomFunctions.values()) {
-            if (customFunction.function.equalsIgnoreCase(functionName)) {
-                return customFunction;
-            }
-        }
-        return UNKNOWN;
+        if (functionName == null) return UNKNOWN;
+        return BY_NAME.getOrDefault(functionName.toLowerCase(Locale.ROOT), UNKNOWN);
     }
 }
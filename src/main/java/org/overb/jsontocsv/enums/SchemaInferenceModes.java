@@ -0,0 +1,7 @@
+package org.overb.jsontocsv.enums;
+
+public enum SchemaInferenceModes {
+    FULL,
+    FIRST_N,
+    RESERVOIR
+}
@@ -0,0 +1,232 @@
+package org.overb.jsontocsv.libs;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates BGZF files (gzip split into independent members of at most 64 KB, as written by bgzip) on several threads.
+ * Every member header carries the member's compressed size, so members can be cut from the stream without inflating
+ * them; they are inflated in batches on a pool while the caller reads the batches before them, in order.
+ */
+public final class BgzfInputStream extends InputStream {
+
+    private static final int HEADER_SIZE = 12;
+    private static final int TRAILER_SIZE = 8;
+    private static final int PROBE_SIZE = 18;
+    private static final int BLOCKS_PER_BATCH = 64;
+    private static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+    private final InputStream compressed;
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private boolean endOfInput;
+    private byte[] current = new byte[0];
+    private int position;
+
+    private record Block(byte[] data, int compressedLength, int crc, int size) {
+    }
+
+    public BgzfInputStream(InputStream compressed, int threads) {
+        this.compressed = compressed;
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.maxInFlight = Math.max(1, threads) * 2;
+    }
+
+    /**
+     * Peeks at the first member header; the stream must support mark/reset.
+     */
+    public static boolean isBgzf(BufferedInputStream input) throws IOException {
+        input.mark(PROBE_SIZE);
+        byte[] header = input.readNBytes(PROBE_SIZE);
+        input.reset();
+        return header.length == PROBE_SIZE
+                && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B && header[2] == 8 && (header[3] & 4) != 0
+                && readShort(header, 10) == 6 && header[12] == 'B' && header[13] == 'C' && readShort(header, 14) == 2;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        compressed.close();
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        while (position == current.length) {
+            while (!endOfInput && pending.size() < maxInFlight) {
+                List<Block> batch = readBatch();
+                if (!batch.isEmpty()) {
+                    pending.add(pool.submit(() -> {
+                        try {
+                            return inflate(batch);
+                        } catch (IOException error) {
+                            throw new UncheckedIOException(error);
+                        }
+                    }));
+                }
+            }
+            if (pending.isEmpty()) {
+                return false;
+            }
+            current = next();
+            position = 0;
+        }
+        return true;
+    }
+
+    private byte[] next() throws IOException {
+        try {
+            return pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading was interrupted");
+        } catch (CancellationException e) {
+            throw new IOException("Stream was closed", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException ioException) {
+                throw ioException.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private List<Block> readBatch() throws IOException {
+        List<Block> batch = new ArrayList<>(BLOCKS_PER_BATCH);
+        while (batch.size() < BLOCKS_PER_BATCH) {
+            Block block = readBlock();
+            if (block == null) {
+                endOfInput = true;
+                break;
+            }
+            batch.add(block);
+        }
+        return batch;
+    }
+
+    private Block readBlock() throws IOException {
+        byte[] header = compressed.readNBytes(HEADER_SIZE);
+        if (header.length == 0) {
+            return null;
+        }
+        if (header.length < HEADER_SIZE || (header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B || header[2] != 8 || (header[3] & 4) == 0) {
+            throw new IOException("Not a BGZF block");
+        }
+        byte[] extra = readFully(readShort(header, 10));
+        int blockSize = -1;
+        for (int i = 0; i + 4 <= extra.length; i += 4 + readShort(extra, i + 2)) {
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && readShort(extra, i + 2) == 2) {
+                blockSize = readShort(extra, i + 4) + 1;
+            }
+        }
+        if (blockSize < 0) {
+            throw new IOException("Not a BGZF block");
+        }
+        byte[] data = readFully(blockSize - HEADER_SIZE - extra.length);
+        int compressedLength = data.length - TRAILER_SIZE;
+        int size = compressedLength < 0 ? -1 : readInt(data, compressedLength + 4);
+        if (size < 0 || size > MAX_BLOCK_SIZE) {
+            throw new IOException("Corrupt BGZF block");
+        }
+        return new Block(data, compressedLength, readInt(data, compressedLength), size);
+    }
+
+    private static byte[] inflate(List<Block> batch) throws IOException {
+        int total = 0;
+        for (Block block : batch) {
+            total += block.size;
+        }
+        byte[] output = new byte[total];
+        Inflater inflater = new Inflater(true);
+        CRC32 crc = new CRC32();
+        try {
+            int offset = 0;
+            for (Block block : batch) {
+                inflater.reset();
+                inflater.setInput(block.data, 0, block.compressedLength);
+                int inflated = 0;
+                while (inflated < block.size && !inflater.finished()) {
+                    int count = inflater.inflate(output, offset + inflated, block.size - inflated);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                crc.reset();
+                crc.update(output, offset, inflated);
+                if (inflated != block.size || (int) crc.getValue() != block.crc) {
+                    throw new IOException("Corrupt BGZF block");
+                }
+                offset += inflated;
+            }
+        } catch (DataFormatException error) {
+            throw new IOException("Corrupt BGZF block", error);
+        } finally {
+            inflater.end();
+        }
+        return output;
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Corrupt BGZF block");
+        }
+        byte[] bytes = compressed.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Truncated BGZF block");
+        }
+        return bytes;
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return readShort(bytes, offset) | readShort(bytes, offset + 2) << 16;
+    }
+}
@@ -0,0 +1,121 @@
+package org.overb.jsontocsv.libs;
+
+import org.overb.jsontocsv.enums.CustomFunctions;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A formula parsed once: the function is resolved, quotes are stripped and paths are compiled up front, so evaluating it
+ * for a row only has to read slots. Instances are immutable and shared through {@link #of(String)}.
+ */
+final class CompiledFormula {
+
+    private static final Pattern FUNCTION_PATTERN = Pattern.compile("\\s*(\\w+)\\s*\\(\\s*(.*?)\\s*\\)\\s*");
+    private static final int MAX_CACHED_FORMULAS = 1024;
+    private static final Map<String, CompiledFormula> CACHE = new ConcurrentHashMap<>();
+    private static final String[] NO_SEGMENTS = new String[0];
+
+    final CustomFunctions function;
+    /** Fixed result for malformed formulas, unknown functions and wrong argument counts; null otherwise. */
+    final String error;
+    /** Column each argument reads from, or null when the argument is not a column reference. */
+    final String[] columnReferences;
+    /** Quoted literal of each argument (quotes removed), or null when the argument is not a literal. */
+    final String[] literals;
+    /** FIND: path of the node or array holding the lookup objects, the field compared and the field returned. */
+    final CompiledPath lookupParent;
+    final String compareField;
+    final String returnField;
+    /** JSON: path relative to the current element or record, or null when blank. */
+    final CompiledPath jsonPath;
+
+    private CompiledFormula(CustomFunctions function, String error, String[] columnReferences, String[] literals,
+                            CompiledPath lookupParent, String compareField, String returnField, CompiledPath jsonPath) {
+        this.function = function;
+        this.error = error;
+        this.columnReferences = columnReferences;
+        this.literals = literals;
+        this.lookupParent = lookupParent;
+        this.compareField = compareField;
+        this.returnField = returnField;
+        this.jsonPath = jsonPath;
+    }
+
+    static CompiledFormula of(String formula) {
+        String key = formula == null ? "" : formula;
+        CompiledFormula compiled = CACHE.get(key);
+        if (compiled == null) {
+            compiled = compile(formula);
+            if (CACHE.size() >= MAX_CACHED_FORMULAS) {
+                CACHE.clear();
+            }
+            CACHE.putIfAbsent(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Resolves the column references against the columns visible to this formula; -1 marks arguments that are not
+     * column references or name a column that is not available.
+     */
+    int[] bind(Map<String, Integer> visibleColumns) {
+        int[] slots = new int[columnReferences.length];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = columnReferences[i] == null ? -1 : visibleColumns.getOrDefault(columnReferences[i], -1);
+        }
+        return slots;
+    }
+
+    private static CompiledFormula compile(String formula) {
+        Matcher functionMatcher = FUNCTION_PATTERN.matcher(formula == null ? "" : formula);
+        if (!functionMatcher.matches()) {
+            return failed(CustomFunctions.UNKNOWN, "MALFORMED FORMULA: " + formula);
+        }
+        String functionName = functionMatcher.group(1).toUpperCase();
+        String functionArguments = functionMatcher.group(2);
+        String[] args = functionArguments.isBlank() ? new String[0] : CustomStringUtils.splitStringsRespectingQuotes(functionArguments).toArray(String[]::new);
+        for (int i = 0; i < args.length; i++) {
+            args[i] = args[i].trim();
+        }
+        CustomFunctions function = CustomFunctions.fromName(functionName);
+        if (function.getParameters() != -1 && function.getParameters() != args.length) {
+            return failed(function, "ERROR: Wrong number of arguments for " + functionName);
+        }
+        String[] columnReferences = new String[args.length];
+        String[] literals = new String[args.length];
+        return switch (function) {
+            case FIND -> {
+                columnReferences[0] = CustomStringUtils.unquoteIfQuoted(args[0]).trim();
+                String[] pathSegments = CustomStringUtils.unquoteIfQuoted(args[1]).trim().split("\\.");
+                String parentPath = String.join(".", Arrays.copyOf(pathSegments, pathSegments.length - 1));
+                yield new CompiledFormula(function, null, columnReferences, literals, CompiledPath.of(parentPath),
+                        pathSegments[pathSegments.length - 1], CustomStringUtils.unquoteIfQuoted(args[2]).trim(), null);
+            }
+            case CONCAT -> {
+                for (int i = 0; i < args.length; i++) {
+                    if (args[i].length() >= 2 && args[i].startsWith("'") && args[i].endsWith("'")) {
+                        literals[i] = args[i].substring(1, args[i].length() - 1);
+                    } else {
+                        columnReferences[i] = args[i];
+                    }
+                }
+                yield new CompiledFormula(function, null, columnReferences, literals, null, null, null, null);
+            }
+            case JSON -> {
+                String path = CustomStringUtils.unquoteIfQuoted(args[0]);
+                yield new CompiledFormula(function, null, columnReferences, literals, null, null, null,
+                        path.isBlank() ? null : CompiledPath.of(path));
+            }
+            case CURRENT_TIMESTAMP -> new CompiledFormula(function, null, columnReferences, literals, null, null, null, null);
+            default -> failed(function, "UNKNOWN FUNCTION: " + functionName);
+        };
+    }
+
+    private static CompiledFormula failed(CustomFunctions function, String error) {
+        return new CompiledFormula(function, error, NO_SEGMENTS, NO_SEGMENTS, null, null, null, null);
+    }
+}
@@ -0,0 +1,170 @@
+package org.overb.jsontocsv.libs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dotted JSON path split once. Segments are interned and the dotted prefixes are computed up front, so navigating,
+ * fanning out over arrays and finding the array ancestor of a path never split or join strings again. Instances are
+ * immutable and shared; {@link #of(String)} caches them by path text.
+ */
+public final class CompiledPath {
+
+    private static final int MAX_CACHED_PATHS = 4096;
+    private static final Map<String, CompiledPath> CACHE = new ConcurrentHashMap<>();
+
+    public static final CompiledPath ROOT = new CompiledPath(new String[0]);
+
+    private final String[] segments;
+    private final String[] prefixes;
+
+    private CompiledPath(String[] segments) {
+        this.segments = segments;
+        this.prefixes = new String[segments.length];
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = segments[i].intern();
+            if (i > 0) prefix.append('.');
+            prefixes[i] = prefix.append(segments[i]).toString();
+        }
+    }
+
+    /**
+     * Compiles <code>path</code>; a null, blank or "." path is the {@link #ROOT}.
+     */
+    public static CompiledPath of(String path) {
+        if (path == null || path.isBlank() || ".".equals(path)) return ROOT;
+        CompiledPath compiled = CACHE.get(path);
+        if (compiled == null) {
+            compiled = new CompiledPath(path.split("\\."));
+            if (CACHE.size() < MAX_CACHED_PATHS) {
+                CACHE.putIfAbsent(path, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    public int depth() {
+        return segments.length;
+    }
+
+    public String segment(int index) {
+        return segments[index];
+    }
+
+    String[] segments() {
+        return segments;
+    }
+
+    /**
+     * The first <code>depth</code> segments joined with dots.
+     */
+    public String prefix(int depth) {
+        return depth == 0 ? "" : prefixes[depth - 1];
+    }
+
+    public CompiledPath prefixPath(int depth) {
+        return depth == 0 ? ROOT : new CompiledPath(Arrays.copyOf(segments, depth));
+    }
+
+    /**
+     * The path below the first <code>depth</code> segments.
+     */
+    public CompiledPath suffixPath(int depth) {
+        return depth == segments.length ? ROOT : new CompiledPath(Arrays.copyOfRange(segments, depth, segments.length));
+    }
+
+    /**
+     * Follows the segments one field at a time; a missing field yields a missing node, never null unless
+     * <code>node</code> is.
+     */
+    public JsonNode navigate(JsonNode node) {
+        if (node == null) return null;
+        for (String segment : segments) {
+            node = node.path(segment);
+        }
+        return node;
+    }
+
+    /**
+     * All values the path reaches from <code>root</code>, fanning out over every array on the way; missing and null
+     * values are dropped and empty segments skipped. Objects are walked without allocating until the first array.
+     */
+    public List<JsonNode> findNodes(JsonNode root) {
+        if (root == null) return List.of();
+        JsonNode node = root;
+        int i = 0;
+        for (; i < segments.length; i++) {
+            if (segments[i].isEmpty()) continue;
+            JsonNode child = node.path(segments[i]);
+            if (child.isMissingNode() || child.isNull()) return Collections.emptyList();
+            if (child.isArray()) break;
+            node = child;
+        }
+        if (i == segments.length) return List.of(node);
+
+        List<JsonNode> current = new ArrayList<>();
+        node.path(segments[i]).forEach(current::add);
+        if (current.isEmpty()) return Collections.emptyList();
+        for (i++; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty()) continue;
+            List<JsonNode> next = new ArrayList<>();
+            for (JsonNode element : current) {
+                JsonNode child = element.path(segment);
+                if (child.isMissingNode() || child.isNull()) continue;
+                if (child.isArray()) {
+                    child.forEach(next::add);
+                } else {
+                    next.add(child);
+                }
+            }
+            if (next.isEmpty()) return Collections.emptyList();
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * Number of segments up to and including the first one that holds an array in <code>record</code>, or 0 when the
+     * path reaches no array; found in a single descent.
+     */
+    public int arrayAncestorDepth(JsonNode record) {
+        JsonNode current = record;
+        for (int i = 0; i < segments.length; i++) {
+            current = current.path(segments[i]);
+            if (current.isArray()) return i + 1;
+            if (current.isMissingNode() || current.isNull()) break;
+        }
+        return 0;
+    }
+
+    /**
+     * The dotted path of the first array on the way to this path in <code>record</code>, or null when there is none.
+     */
+    public String arrayAncestorPath(JsonNode record) {
+        int depth = arrayAncestorDepth(record);
+        return depth == 0 ? null : prefixes[depth - 1];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompiledPath other && Arrays.equals(segments, other.segments);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(segments);
+    }
+
+    @Override
+    public String toString() {
+        return prefix(segments.length);
+    }
+}
@@ -0,0 +1,173 @@
+package org.overb.jsontocsv.libs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.overb.jsontocsv.dto.CsvColumnDefinition;
+import org.overb.jsontocsv.enums.ColumnTypes;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Execution plan compiled once per conversion from the column definitions. Path sources are compiled up front and the
+ * grouping of columns under their array ancestors is cached per record shape, so records that look alike (the usual
+ * case) reuse the same layout instead of re-deriving it. Rows are built in <code>String[]</code> slots indexed by
+ * definition position; {@link #outputSlots()} maps them to the requested headers.
+ */
+public final class CsvColumnPlan {
+
+    private static final int MAX_CACHED_LAYOUTS = 256;
+
+    private final List<String> headers;
+    private final Column[] columns;
+    private final int[] outputSlots;
+    private final Map<Shape, RecordLayout> layouts = new ConcurrentHashMap<>();
+    private final FindIndex.Cache findIndexes = new FindIndex.Cache();
+
+    private CsvColumnPlan(List<CsvColumnDefinition> definitions, List<String> headers) {
+        this.headers = List.copyOf(headers);
+        this.columns = new Column[definitions.size()];
+        Map<String, Integer> slotsByName = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            CsvColumnDefinition definition = definitions.get(i);
+            columns[i] = new Column(i, definition, CompiledPath.of(definition.getJsonSource()));
+            slotsByName.put(definition.getColumnName(), i);
+        }
+        int[] mapping = new int[this.headers.size()];
+        boolean identity = mapping.length == columns.length;
+        for (int i = 0; i < mapping.length; i++) {
+            mapping[i] = slotsByName.getOrDefault(this.headers.get(i), -1);
+            identity &= mapping[i] == i;
+        }
+        this.outputSlots = identity ? null : mapping;
+    }
+
+    public static CsvColumnPlan compile(List<CsvColumnDefinition> definitions, List<String> headers) {
+        return new CsvColumnPlan(definitions, headers);
+    }
+
+    public List<String> headers() {
+        return headers;
+    }
+
+    public int width() {
+        return columns.length;
+    }
+
+    /**
+     * Slot index for each header, or null when headers and definitions line up one to one (the normal case), in which
+     * case the slots array already is the output row.
+     */
+    int[] outputSlots() {
+        return outputSlots;
+    }
+
+    /**
+     * FIND lookup indexes for the document this plan converts; a plan is compiled per conversion, so they live exactly
+     * as long as the conversion does.
+     */
+    FindIndex.Cache findIndexes() {
+        return findIndexes;
+    }
+
+    RecordLayout layoutFor(JsonNode record) {
+        int[] ancestorDepths = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            ancestorDepths[i] = columns[i].path.arrayAncestorDepth(record);
+        }
+        Shape shape = new Shape(ancestorDepths);
+        RecordLayout layout = layouts.get(shape);
+        if (layout == null) {
+            layout = new RecordLayout(columns, ancestorDepths);
+            if (layouts.size() < MAX_CACHED_LAYOUTS) {
+                layouts.putIfAbsent(shape, layout);
+            }
+        }
+        return layout;
+    }
+
+    record Column(int index, CsvColumnDefinition definition, CompiledPath path) {
+        boolean isFormula() {
+            return definition.getType() == ColumnTypes.FORMULA;
+        }
+    }
+
+    record Group(String ancestorPath, CompiledPath ancestor, List<Column> nonFormulas, List<CompiledPath> relativePaths,
+                 List<Formula> formulas) {
+    }
+
+    /**
+     * A compiled formula column with its column references bound to slots. Only columns assigned earlier in the
+     * evaluation order are visible, exactly like values that already exist in the row being built.
+     */
+    record Formula(Column column, CompiledFormula compiled, int[] argumentSlots) {
+    }
+
+    static final class RecordLayout {
+        final List<Column> scalars = new ArrayList<>();
+        final List<Formula> scalarFormulas = new ArrayList<>();
+        final List<Group> groups = new ArrayList<>();
+
+        private RecordLayout(Column[] columns, int[] ancestorDepths) {
+            Map<String, List<Column>> groupedNonFormulas = new LinkedHashMap<>();
+            Map<String, List<Column>> groupedFormulas = new LinkedHashMap<>();
+            Map<String, CompiledPath> ancestorPaths = new HashMap<>();
+            List<Column> scalarFormulaColumns = new ArrayList<>();
+            for (int i = 0; i < columns.length; i++) {
+                Column column = columns[i];
+                if (ancestorDepths[i] == 0) {
+                    if (column.isFormula()) scalarFormulaColumns.add(column);
+                    else scalars.add(column);
+                    continue;
+                }
+                String ancestor = column.path.prefix(ancestorDepths[i]);
+                int depth = ancestorDepths[i];
+                ancestorPaths.computeIfAbsent(ancestor, k -> column.path.prefixPath(depth));
+                if (column.isFormula()) groupedFormulas.computeIfAbsent(ancestor, k -> new ArrayList<>()).add(column);
+                else groupedNonFormulas.computeIfAbsent(ancestor, k -> new ArrayList<>()).add(column);
+            }
+            List<String> groupOrder = new ArrayList<>(groupedNonFormulas.keySet());
+            for (String k : groupedFormulas.keySet()) {
+                if (!groupOrder.contains(k)) groupOrder.add(k);
+            }
+            // evaluation order: scalars, then per group its columns followed by its formulas, then scalar formulas
+            Map<String, Integer> assigned = new HashMap<>();
+            for (Column column : scalars) {
+                assigned.put(column.definition.getColumnName(), column.index);
+            }
+            for (String ancestor : groupOrder) {
+                List<Column> nonFormulas = groupedNonFormulas.getOrDefault(ancestor, List.of());
+                CompiledPath ancestorPath = ancestorPaths.get(ancestor);
+                List<CompiledPath> relativePaths = new ArrayList<>(nonFormulas.size());
+                for (Column column : nonFormulas) {
+                    relativePaths.add(column.path.suffixPath(ancestorPath.depth()));
+                    assigned.put(column.definition.getColumnName(), column.index);
+                }
+                groups.add(new Group(ancestor, ancestorPath, nonFormulas, relativePaths,
+                        toFormulas(groupedFormulas.getOrDefault(ancestor, List.of()), assigned)));
+            }
+            scalarFormulas.addAll(toFormulas(scalarFormulaColumns, assigned));
+        }
+
+        private static List<Formula> toFormulas(List<Column> columns, Map<String, Integer> assigned) {
+            List<Formula> formulas = new ArrayList<>(columns.size());
+            for (Column column : columns) {
+                CompiledFormula compiled = CompiledFormula.of(column.definition.getJsonSource());
+                formulas.add(new Formula(column, compiled, compiled.bind(assigned)));
+                assigned.put(column.definition.getColumnName(), column.index);
+            }
+            return formulas;
+        }
+    }
+
+    private record Shape(int[] ancestorDepths) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Shape other && Arrays.equals(ancestorDepths, other.ancestorDepths);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(ancestorDepths);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.overb.jsontocsv.libs;
+
+import org.overb.jsontocsv.enums.CsvNullStyles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * CSV row sink that encodes fields straight into one reusable UTF-8 byte buffer and hands it to the channel in large
+ * blocks. Quoting follows {@link CsvRowConsumer}: a field is quoted when it contains a comma, quote, tab or line break
+ * or starts or ends with a space, and embedded quotes are doubled while encoding, so no intermediate strings are built.
+ */
+public final class CsvFileWriter implements CsvSink {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    // most bytes a single loop step can write: a surrogate pair encodes to four
+    private static final int MAX_CHAR_BYTES = 4;
+
+    private final WritableByteChannel channel;
+    private final Path path;
+    private final CsvNullStyles nullStyle;
+    private final byte[] nullBytes;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+    private int position;
+    private long bytesWritten;
+    private long rowsWritten;
+
+    public CsvFileWriter(WritableByteChannel channel, CsvNullStyles nullStyle) {
+        this(channel, null, nullStyle);
+    }
+
+    private CsvFileWriter(WritableByteChannel channel, Path path, CsvNullStyles nullStyle) {
+        this.channel = channel;
+        this.path = path;
+        this.nullStyle = nullStyle;
+        this.nullBytes = nullStyle == CsvNullStyles.LITERAL_NULL ? new byte[]{'N', 'U', 'L', 'L'} : new byte[0];
+    }
+
+    /**
+     * Opens <code>path</code> for writing; a name ending in <code>.gz</code> gets gzip-compressed output. When the
+     * compressor cannot be set up, the file is removed again.
+     */
+    public static CsvFileWriter open(Path path, CsvNullStyles nullStyle) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (!JsonIo.isGzip(path.toFile())) {
+            return new CsvFileWriter(channel, path, nullStyle);
+        }
+        try {
+            return new CsvFileWriter(new GzipWriterChannel(channel), path, nullStyle);
+        } catch (IOException error) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw error;
+        }
+    }
+
+    @Override
+    public void accept(String[] row) {
+        try {
+            writeRow(row);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    public void writeRow(String[] row) throws IOException {
+        if (row == null) {
+            return;
+        }
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                put((byte) ',');
+            }
+            String value = row[i];
+            if (value == null) {
+                for (byte b : nullBytes) put(b);
+            } else {
+                writeField(value);
+            }
+        }
+        put((byte) '\n');
+        rowsWritten++;
+    }
+
+    private void writeField(String value) throws IOException {
+        int length = value.length();
+        boolean quoted = needsQuote(value, length);
+        if (quoted) {
+            put((byte) '"');
+        }
+        for (int i = 0; i < length; i++) {
+            if (position + MAX_CHAR_BYTES > buffer.length) {
+                flushBuffer();
+            }
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"') {
+                    buffer[position++] = '"';
+                }
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced the same way String.getBytes(UTF_8) does
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        if (quoted) {
+            put((byte) '"');
+        }
+    }
+
+    private static boolean needsQuote(String value, int length) {
+        if (length == 0) {
+            return false;
+        }
+        if (value.charAt(0) == ' ' || value.charAt(length - 1) == ' ') {
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            switch (value.charAt(i)) {
+                case ',', '"', '\t', '\n', '\r' -> {
+                    return true;
+                }
+                default -> {
+                }
+            }
+        }
+        return false;
+    }
+
+    private void put(byte b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = b;
+    }
+
+    private void flushBuffer() throws IOException {
+        byteBuffer.clear().limit(position);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+        bytesWritten += position;
+        position = 0;
+    }
+
+    @Override
+    public void writeEncoded(byte[] bytes, int[] rowEnds, int rows) throws IOException {
+        if (rows > 0) {
+            writeEncoded(bytes, 0, rowEnds[rows - 1], rows);
+        }
+    }
+
+    void writeEncoded(byte[] bytes, int offset, int length, long rows) throws IOException {
+        flushBuffer();
+        ByteBuffer encoded = ByteBuffer.wrap(bytes, offset, length);
+        while (encoded.hasRemaining()) {
+            channel.write(encoded);
+        }
+        bytesWritten += length;
+        rowsWritten += rows;
+    }
+
+    @Override
+    public CsvNullStyles nullStyle() {
+        return nullStyle;
+    }
+
+    /**
+     * Bytes handed to the channel so far, including what is still buffered.
+     */
+    @Override
+    public long bytesWritten() {
+        return bytesWritten + position;
+    }
+
+    public long rowsWritten() {
+        return rowsWritten;
+    }
+
+    @Override
+    public List<Path> files() {
+        return path == null ? List.of() : List.of(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -1,64 +1,101 @@
 package org.overb.jsontocsv.libs;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import org.overb.jsontocsv.dto.CsvColumnDefinition;
+import org.overb.jsontocsv.dto.ParallelOptions;
 import org.overb.jsontocsv.enums.ColumnTypes;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 public final class CsvRowExpander {
 
-    public static ObservableList<Map<String, String>> previewCsvRows(JsonNode loadedJson, String rootPath, List<CsvColumnDefinition> definitions, int limit) {
-        ObservableList<Map<String, String>> rows = FXCollections.observableArrayList();
-        if (definitions == null || definitions.isEmpty() || loadedJson == null) return rows;
+    public static long streamCsvRows(JsonNode loadedJson, String rootPath, List<CsvColumnDefinition> definitions, List<String> headers, Consumer<String[]> rowConsumer) {
+        return streamCsvRows(loadedJson, rootPath, definitions, headers, rowConsumer, ParallelOptions.SEQUENTIAL);
+    }
 
-        JsonNode root = JsonPath.navigate(loadedJson, rootPath);
-        List<String> headers = headersFrom(definitions);
+    public static long streamCsvRows(JsonNode loadedJson, String rootPath, List<CsvColumnDefinition> definitions, List<String> headers, Consumer<String[]> rowConsumer,
+                                     ParallelOptions parallel) {
+        return streamCsvRows(loadedJson, rootPath, definitions, headers, rowConsumer, parallel, new ExpansionControl());
+    }
 
-        for (JsonNode record : toRecordList(root)) {
-            streamRecord(loadedJson, record, definitions, headers, row -> {
-                if (limit > 0 && rows.size() >= limit) {
-                    return;
-                }
-                Map<String, String> map = new LinkedHashMap<>();
-                for (int i = 0; i < headers.size(); i++) {
-                    map.put(headers.get(i), row[i]);
-                }
-                rows.add(map);
-            });
-            if (limit > 0 && rows.size() >= limit) break;
-        }
-        if (limit > 0 && rows.size() > limit) {
-            return FXCollections.observableArrayList(rows.subList(0, limit));
+    public static long streamCsvRows(JsonNode loadedJson, String rootPath, List<CsvColumnDefinition> definitions, List<String> headers, Consumer<String[]> rowConsumer,
+                                     ParallelOptions parallel, ExpansionControl control) {
+        if (definitions == null || definitions.isEmpty() || loadedJson == null) {
+            return 0L;
         }
-        return rows;
+        CsvColumnPlan plan = CsvColumnPlan.compile(definitions, headers);
+        List<JsonNode> records = toRecordList(JsonPath.navigate(loadedJson, rootPath));
+        control.setTotalRecords(records.size());
+        return expandRecords(loadedJson, plan, rowConsumer, parallel, control, recordSink -> {
+            for (JsonNode record : records) {
+                recordSink.accept(record);
+            }
+        });
     }
 
-    public static long streamCsvRows(JsonNode loadedJson, String rootPath, List<CsvColumnDefinition> definitions, List<String> headers, Consumer<String[]> rowConsumer) {
-        if (definitions == null || definitions.isEmpty() || loadedJson == null) {
+    public static long streamCsvRows(File file, String rootPath, List<CsvColumnDefinition> definitions, List<String> headers, Consumer<String[]> rowConsumer) throws IOException {
+        return streamCsvRows(file, rootPath, definitions, headers, rowConsumer, ParallelOptions.SEQUENTIAL);
+    }
+
+    /**
+     * Tree-free variant of {@link #streamCsvRows(JsonNode, String, List, List, Consumer, ParallelOptions)}: records are
+     * read from the file one at a time, expanded and discarded. FIND formulas look values up elsewhere in the document,
+     * so callers must load the tree instead when {@link #requiresDocument(List)} is true.
+     */
+    public static long streamCsvRows(File file, String rootPath, List<CsvColumnDefinition> definitions, List<String> headers, Consumer<String[]> rowConsumer,
+                                     ParallelOptions parallel) throws IOException {
+        return streamCsvRows(file, rootPath, definitions, headers, rowConsumer, parallel, new ExpansionControl());
+    }
+
+    public static long streamCsvRows(File file, String rootPath, List<CsvColumnDefinition> definitions, List<String> headers, Consumer<String[]> rowConsumer,
+                                     ParallelOptions parallel, ExpansionControl control) throws IOException {
+        if (definitions == null || definitions.isEmpty() || file == null) {
             return 0L;
         }
-        AtomicLong rowCounter = new AtomicLong(0);
-        Consumer<String[]> countingConsumer = row -> {
-            rowConsumer.accept(row);
-            rowCounter.incrementAndGet();
-        };
+        CsvColumnPlan plan = CsvColumnPlan.compile(definitions, headers);
+        return expandRecords(MissingNode.getInstance(), plan, rowConsumer, parallel, control,
+                recordSink -> JsonIo.streamRecords(file, rootPath, recordSink));
+    }
 
-        JsonNode root = JsonPath.navigate(loadedJson, rootPath);
-        for (JsonNode record : toRecordList(root)) {
-            streamRecord(loadedJson, record, definitions, headers, countingConsumer);
+    private static <E extends Exception> long expandRecords(JsonNode loadedJson, CsvColumnPlan plan, Consumer<String[]> rowConsumer, ParallelOptions parallel,
+                                                            ExpansionControl control, RecordSource<E> source) throws E {
+        if (parallel == null || !parallel.isParallel()) {
+            AtomicLong rowCounter = new AtomicLong(0);
+            Consumer<String[]> countingConsumer = row -> {
+                rowConsumer.accept(row);
+                rowCounter.incrementAndGet();
+            };
+            source.forEachRecord(record -> streamRecord(loadedJson, record, plan, countingConsumer, control));
+            return rowCounter.get();
         }
-        return rowCounter.get();
+        try (ParallelRowExpander expander = new ParallelRowExpander(loadedJson, plan, rowConsumer, parallel, control)) {
+            source.forEachRecord(expander);
+            return expander.finish();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordSource<E extends Exception> {
+        void forEachRecord(Consumer<JsonNode> recordSink) throws E;
+    }
+
+    public static boolean requiresDocument(List<CsvColumnDefinition> definitions) {
+        if (definitions == null) return false;
+        for (CsvColumnDefinition def : definitions) {
+            if (FunctionsHelper.referencesDocument(def)) return true;
+        }
+        return false;
     }
 
-    private static List<JsonNode> toRecordList(JsonNode root) {
+    static List<JsonNode> toRecordList(JsonNode root) {
         if (root == null) return List.of();
         if (root.isArray()) {
             List<JsonNode> list = new ArrayList<>(root.size());
@@ -68,137 +105,198 @@ public final class CsvRowExpander {
         return List.of(root);
     }
 
-    private static void streamRecord(JsonNode loadedJson, JsonNode record, List<CsvColumnDefinition> definitions, List<String> headers, Consumer<String[]> rowConsumer) {
-        Map<String, List<CsvColumnDefinition>> groupedNonFormulas = new LinkedHashMap<>();
-        Map<String, List<CsvColumnDefinition>> groupedFormulas = new LinkedHashMap<>();
-        List<CsvColumnDefinition> scalars = new ArrayList<>();
-        List<CsvColumnDefinition> scalarFormulas = new ArrayList<>();
-        for (CsvColumnDefinition def : definitions) {
-            boolean isFormula = def.getType() == ColumnTypes.FORMULA;
-            String ancestor = JsonPath.findArrayAncestorPath(record, def.getJsonSource());
-            if (ancestor == null) {
-                if (isFormula) scalarFormulas.add(def);
-                else scalars.add(def);
-            } else {
-                if (isFormula) groupedFormulas.computeIfAbsent(ancestor, k -> new ArrayList<>()).add(def);
-                else groupedNonFormulas.computeIfAbsent(ancestor, k -> new ArrayList<>()).add(def);
-            }
-        }
+    static void streamRecord(JsonNode loadedJson, JsonNode record, CsvColumnPlan plan, Consumer<String[]> rowConsumer, ExpansionControl control) {
+        streamRecord(loadedJson, record, plan, null, null, rowConsumer, control);
+    }
 
-        List<Map<String, String>> rowsInProgress = new ArrayList<>();
-        rowsInProgress.add(new LinkedHashMap<>());
-        for (CsvColumnDefinition def : scalars) {
-            List<Map<String, String>> next = new ArrayList<>();
-            for (Map<String, String> rowInProgress : rowsInProgress) {
-                next.addAll(expandNonFormula(rowInProgress, loadedJson, record, def, def.getJsonSource()));
-            }
-            rowsInProgress = next;
-        }
-        List<String> groupOrder = new ArrayList<>(groupedNonFormulas.keySet());
-        for (String k : groupedFormulas.keySet()) {
-            if (!groupOrder.contains(k)) groupOrder.add(k);
-        }
-        for (Map<String, String> rowInProgress : rowsInProgress) {
-            emitRowsForGroups(loadedJson, record, groupOrder, 0, groupedNonFormulas, groupedFormulas,
-                    scalarFormulas, rowInProgress, headers, rowConsumer);
-        }
+    /**
+     * Expands <code>record</code> from the row at <code>start</code>, or from its first row when null. A row's position
+     * is the index taken in every fan-out on the way to it; <code>positions</code>, when not null, receives it right
+     * before the row as a reused array and the number of its entries in use. A position only holds for the record and
+     * plan it was reported for, so seeking to a row costs the fan-outs above it instead of all the rows before it.
+     */
+    static void streamRecord(JsonNode loadedJson, JsonNode record, CsvColumnPlan plan, int[] start, ObjIntConsumer<int[]> positions,
+                             Consumer<String[]> rowConsumer, ExpansionControl control) {
+        control.checkCancelled();
+        if (control.isLimitReached()) return;
+        new RecordExpansion(loadedJson, record, plan, start, positions, rowConsumer, control).expandScalar(0);
+        control.checkCancelled();
+        control.recordProcessed();
     }
 
-    private static void emitRowsForGroups(JsonNode loadedJson, JsonNode record, List<String> groupOrder, int rowIndex,
-                                          Map<String, List<CsvColumnDefinition>> groupedNonFormulas,
-                                          Map<String, List<CsvColumnDefinition>> groupedFormulas,
-                                          List<CsvColumnDefinition> scalarFormulas,
-                                          Map<String, String> rowInProgress,
-                                          List<String> headers,
-                                          java.util.function.Consumer<String[]> rowConsumer) {
-        if (rowIndex >= groupOrder.size()) {
-            List<Map<String, String>> afterScalarList = applyFormulasAccum(rowInProgress, loadedJson, record, record, scalarFormulas);
-            for (Map<String, String> row : afterScalarList) {
-                rowConsumer.accept(buildCsvRow(row, headers));
+    /**
+     * Depth-first expansion of one record into a single slots array. Every column only ever writes its own slot, so
+     * fanning out over several values just overwrites the slot before recursing again; the only copy made is the
+     * emitted row itself. Every fan-out loop consults the control first, so cancellation or a reached row limit prunes
+     * the remaining combinations instead of expanding them for nothing.
+     */
+    private static final class RecordExpansion {
+        private final JsonNode loadedJson;
+        private final JsonNode record;
+        private final CsvColumnPlan.RecordLayout layout;
+        private final int[] outputSlots;
+        private final FindIndex.Cache findIndexes;
+        private final Consumer<String[]> rowConsumer;
+        private final ExpansionControl control;
+        private final String[] slots;
+        private final int[] start;
+        private final ObjIntConsumer<int[]> positions;
+        private boolean resuming;
+        private int[] position = new int[8];
+        private int depth;
+
+        private RecordExpansion(JsonNode loadedJson, JsonNode record, CsvColumnPlan plan, int[] start, ObjIntConsumer<int[]> positions,
+                                Consumer<String[]> rowConsumer, ExpansionControl control) {
+            this.loadedJson = loadedJson;
+            this.record = record;
+            this.layout = plan.layoutFor(record);
+            this.outputSlots = plan.outputSlots();
+            this.findIndexes = plan.findIndexes();
+            this.rowConsumer = rowConsumer;
+            this.control = control;
+            this.slots = new String[plan.width()];
+            this.start = start;
+            this.positions = positions;
+            this.resuming = start != null;
+        }
+
+        /**
+         * Enters a fan-out and returns its level in the position.
+         */
+        private int enterFanOut() {
+            if (depth == position.length) {
+                position = Arrays.copyOf(position, depth * 2);
             }
-            return;
+            return depth++;
         }
 
-        String ancestorPath = groupOrder.get(rowIndex);
-        List<CsvColumnDefinition> nonFormulas = groupedNonFormulas.getOrDefault(ancestorPath, List.of());
-        List<CsvColumnDefinition> formulas = groupedFormulas.getOrDefault(ancestorPath, List.of());
+        /**
+         * Where the fan-out at <code>level</code> begins: at the start position until its row has been reached.
+         */
+        private int firstIndex(int level) {
+            return resuming && level < start.length ? start[level] : 0;
+        }
 
-        JsonNode arrayNode = JsonPath.navigate(record, ancestorPath);
-        if (!arrayNode.isArray() || arrayNode.isEmpty()) {
-            Map<String, String> withNulls = new LinkedHashMap<>(rowInProgress);
-            for (CsvColumnDefinition def : nonFormulas) {
-                withNulls = FunctionsHelper.putValue(withNulls, def.getColumnName(), null);
+        private void expandScalar(int scalarIndex) {
+            if (scalarIndex >= layout.scalars.size()) {
+                expandGroup(0);
+                return;
+            }
+            CsvColumnPlan.Column column = layout.scalars.get(scalarIndex);
+            List<JsonNode> values = resolveValues(column, record, column.path());
+            if (values == null) {
+                expandScalar(scalarIndex + 1);
+                return;
             }
-            List<Map<String, String>> afterGroupList = applyFormulasAccum(withNulls, loadedJson, record, null, formulas);
-            for (Map<String, String> nextRow : afterGroupList) {
-                emitRowsForGroups(loadedJson, record, groupOrder, rowIndex + 1,
-                        groupedNonFormulas, groupedFormulas, scalarFormulas, nextRow, headers, rowConsumer);
+            int level = enterFanOut();
+            for (int i = firstIndex(level); i < values.size(); i++) {
+                if (control.shouldStop()) break;
+                position[level] = i;
+                slots[column.index()] = textOf(values.get(i));
+                expandScalar(scalarIndex + 1);
             }
-            return;
+            depth--;
         }
 
-        for (JsonNode element : arrayNode) {
-            List<Map<String, String>> elementRows = new ArrayList<>();
-            elementRows.add(new LinkedHashMap<>(rowInProgress));
-
-            for (CsvColumnDefinition csvColumnDefinition : nonFormulas) {
-                String relPath = JsonPath.relativePath(csvColumnDefinition.getJsonSource(), ancestorPath);
-                List<Map<String, String>> next = new ArrayList<>();
-                for (Map<String, String> row : elementRows) {
-                    next.addAll(expandNonFormula(row, loadedJson, element, csvColumnDefinition, relPath));
-                }
-                elementRows = next;
+        private void expandGroup(int groupIndex) {
+            if (groupIndex >= layout.groups.size()) {
+                applyFormulas(layout.scalarFormulas, record);
+                emit();
+                return;
             }
-
-            for (Map<String, String> row : elementRows) {
-                List<Map<String, String>> afterGroupList = applyFormulasAccum(row, loadedJson, record, element, formulas);
-                for (Map<String, String> nextRow : afterGroupList) {
-                    emitRowsForGroups(loadedJson, record, groupOrder, rowIndex + 1,
-                            groupedNonFormulas, groupedFormulas, scalarFormulas, nextRow, headers, rowConsumer);
+            CsvColumnPlan.Group group = layout.groups.get(groupIndex);
+            JsonNode arrayNode = group.ancestor().navigate(record);
+            if (!arrayNode.isArray() || arrayNode.isEmpty()) {
+                for (CsvColumnPlan.Column column : group.nonFormulas()) {
+                    slots[column.index()] = null;
                 }
+                applyFormulas(group.formulas(), null);
+                expandGroup(groupIndex + 1);
+                return;
+            }
+            int level = enterFanOut();
+            for (int i = firstIndex(level); i < arrayNode.size(); i++) {
+                if (control.shouldStop()) break;
+                position[level] = i;
+                expandGroupColumn(group, groupIndex, 0, arrayNode.get(i));
             }
+            depth--;
         }
-    }
 
-    private static List<Map<String, String>> applyFormulasAccum(Map<String, String> base, JsonNode loadedJson, JsonNode record,
-                                                                JsonNode localBase, List<CsvColumnDefinition> formulas) {
-        List<Map<String, String>> rowsInProgress = List.of(base);
-        for (CsvColumnDefinition f : formulas) {
-            List<Map<String, String>> next = new ArrayList<>();
-            for (Map<String, String> rowInProgress : rowsInProgress) {
-                List<Map<String, String>> res = FunctionsHelper.evaluateFormula(rowInProgress, loadedJson, f, localBase);
-                if (res.isEmpty()) {
-                    next.add(rowInProgress);
-                } else {
-                    next.addAll(res);
-                }
+        private void expandGroupColumn(CsvColumnPlan.Group group, int groupIndex, int columnIndex, JsonNode element) {
+            if (columnIndex >= group.nonFormulas().size()) {
+                applyFormulas(group.formulas(), element);
+                expandGroup(groupIndex + 1);
+                return;
             }
-            rowsInProgress = next;
+            CsvColumnPlan.Column column = group.nonFormulas().get(columnIndex);
+            List<JsonNode> values = resolveValues(column, element, group.relativePaths().get(columnIndex));
+            if (values == null) {
+                expandGroupColumn(group, groupIndex, columnIndex + 1, element);
+                return;
+            }
+            int level = enterFanOut();
+            for (int i = firstIndex(level); i < values.size(); i++) {
+                if (control.shouldStop()) break;
+                position[level] = i;
+                slots[column.index()] = textOf(values.get(i));
+                expandGroupColumn(group, groupIndex, columnIndex + 1, element);
+            }
+            depth--;
         }
-        return rowsInProgress;
-    }
 
-
-    private static List<Map<String, String>> expandNonFormula(Map<String, String> base, JsonNode loadedJson, JsonNode baseNode,
-                                                              CsvColumnDefinition columnDefinition, String effectivePath) {
-        // Formulas are handled elsewhere (computed last), so just pass through
-        if (columnDefinition.getType() == ColumnTypes.FORMULA) {
-            return List.of(base);
+        /**
+         * Returns the values a column fans out over, or null when the column has a single value that was already
+         * written into its slot.
+         */
+        private List<JsonNode> resolveValues(CsvColumnPlan.Column column, JsonNode baseNode, CompiledPath effectivePath) {
+            CsvColumnDefinition columnDefinition = column.definition();
+            // LITERAL stays the same
+            if (columnDefinition.getType() == ColumnTypes.LITERAL) {
+                slots[column.index()] = columnDefinition.getJsonSource();
+                return null;
+            }
+            // DEFAULT (and any non-formula custom type that resolves a path)
+            List<JsonNode> found = effectivePath.findNodes(baseNode);
+            if (found.isEmpty()) {
+                slots[column.index()] = null;
+                return null;
+            }
+            if (found.size() == 1) {
+                slots[column.index()] = textOf(found.getFirst());
+                return null;
+            }
+            return found;
         }
-        // LITERAL stays the same
-        if (columnDefinition.getType() == ColumnTypes.LITERAL) {
-            return List.of(FunctionsHelper.putValue(base, columnDefinition.getColumnName(), columnDefinition.getJsonSource()));
+
+        private static String textOf(JsonNode node) {
+            return node.isValueNode() ? node.asText() : node.toString();
         }
-        // DEFAULT (and any non-formula custom type that resolves a path)
-        List<JsonNode> found = JsonPath.findNodesByPath(baseNode, effectivePath);
-        if (found.isEmpty()) {
-            return List.of(FunctionsHelper.putValue(base, columnDefinition.getColumnName(), null));
+
+        private void applyFormulas(List<CsvColumnPlan.Formula> formulas, JsonNode localBase) {
+            for (CsvColumnPlan.Formula formula : formulas) {
+                slots[formula.column().index()] = FunctionsHelper.evaluateFormula(slots, formula.compiled(), formula.argumentSlots(),
+                        loadedJson, localBase, findIndexes);
+            }
         }
-        List<Map<String, String>> out = new ArrayList<>(found.size());
-        for (JsonNode node : found) {
-            out.add(FunctionsHelper.putValue(base, columnDefinition.getColumnName(), node.isValueNode() ? node.asText() : node.toString()));
+
+        private void emit() {
+            if (control.shouldStop()) return;
+            resuming = false;
+            if (positions != null) {
+                positions.accept(position, depth);
+            }
+            if (outputSlots == null) {
+                rowConsumer.accept(slots.clone());
+            } else {
+                String[] row = new String[outputSlots.length];
+                for (int i = 0; i < outputSlots.length; i++) {
+                    row[i] = outputSlots[i] < 0 ? null : slots[outputSlots[i]];
+                }
+                rowConsumer.accept(row);
+            }
+            control.rowEmitted();
         }
-        return out;
     }
 
     public static List<String> headersFrom(List<CsvColumnDefinition> definitions) {
@@ -206,12 +304,4 @@ public final class CsvRowExpander {
         for (CsvColumnDefinition d : definitions) headers.add(d.getColumnName());
         return headers;
     }
-
-    private static String[] buildCsvRow(Map<String, String> rowInProgress, List<String> headers) {
-        String[] row = new String[headers.size()];
-        for (int i = 0; i < headers.size(); i++) {
-            row[i] = rowInProgress.get(headers.get(i));
-        }
-        return row;
-    }
-}
\ No newline at end of file
+}
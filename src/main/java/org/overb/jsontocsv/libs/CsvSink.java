@@ -0,0 +1,59 @@
+package org.overb.jsontocsv.libs;
+
+import org.overb.jsontocsv.dto.SplitOptions;
+import org.overb.jsontocsv.enums.CsvNullStyles;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Destination of an export: one CSV file or, when splitting, a series of rolled files that each start with the header.
+ */
+public interface CsvSink extends Consumer<String[]>, Closeable {
+
+    /**
+     * Opens the export target and writes the header. With splitting enabled the rows go to numbered files next to
+     * <code>path</code> instead of <code>path</code> itself, created as rows arrive. When opening fails, the file it
+     * created is removed again.
+     */
+    static CsvSink open(Path path, CsvNullStyles nullStyle, List<String> headers, SplitOptions split) throws IOException {
+        if (split != null && split.isEnabled()) {
+            return new RollingCsvWriter(path, nullStyle, headers, split);
+        }
+        CsvFileWriter writer = CsvFileWriter.open(path, nullStyle);
+        try {
+            writer.writeRow(headers.toArray(new String[0]));
+        } catch (IOException | RuntimeException error) {
+            try {
+                writer.close();
+            } catch (IOException closeError) {
+                error.addSuppressed(closeError);
+            }
+            Files.deleteIfExists(path);
+            throw error;
+        }
+        return writer;
+    }
+
+    /**
+     * Appends <code>rows</code> rows encoded by another writer with the same null style, e.g. a segment converted on a
+     * worker thread; <code>rowEnds[i]</code> is the offset just past row <code>i</code>.
+     */
+    void writeEncoded(byte[] bytes, int[] rowEnds, int rows) throws IOException;
+
+    CsvNullStyles nullStyle();
+
+    /**
+     * CSV bytes written so far over all files, before any compression.
+     */
+    long bytesWritten();
+
+    /**
+     * Files created so far, in order.
+     */
+    List<Path> files();
+}
@@ -21,6 +21,11 @@ public class CustomStringUtils {
         return new DecimalFormat("#,##0.##").format(sizeInBytes / Math.pow(1024, digitGroups)) + units[digitGroups];
     }
 
+    public static String makePrettyThroughput(long bytes, long milliseconds) {
+        double megabytesPerSecond = bytes / (1024.0 * 1024.0) / (Math.max(1, milliseconds) / 1000.0);
+        return new DecimalFormat("#,##0.#").format(megabytesPerSecond) + "MB/s";
+    }
+
     public static String makePrettyDuration(long milliseconds) {
         if (milliseconds < 1000) {
             return milliseconds + "ms";
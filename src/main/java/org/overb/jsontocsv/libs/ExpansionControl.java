@@ -0,0 +1,80 @@
+package org.overb.jsontocsv.libs;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Handle shared between a running conversion and the code that started it: the caller can cancel the expansion, cap
+ * the number of rows and watch how many records were processed. Expansion checks it while fanning out, so a cancelled
+ * or satisfied expansion stops even in the middle of a large record; cancellation ends it with a
+ * {@link CancellationException}, a reached row limit ends it quietly.
+ */
+public final class ExpansionControl {
+
+    private final LongAdder recordsProcessed = new LongAdder();
+    private final AtomicLong rowsEmitted = new AtomicLong();
+    private volatile long totalRecords = -1;
+    private volatile long rowLimit;
+    private volatile boolean limitReached;
+    private volatile boolean cancelled;
+
+    /**
+     * Stops the expansion after <code>rowLimit</code> rows; 0 or less means no limit.
+     */
+    public ExpansionControl limitRows(long rowLimit) {
+        this.rowLimit = rowLimit;
+        return this;
+    }
+
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Number of records at the root path, or -1 while unknown (records streamed from a file).
+     */
+    public long totalRecords() {
+        return totalRecords;
+    }
+
+    public long recordsProcessed() {
+        return recordsProcessed.sum();
+    }
+
+    void setTotalRecords(long totalRecords) {
+        this.totalRecords = totalRecords;
+    }
+
+    void recordProcessed() {
+        recordsProcessed.increment();
+    }
+
+    void rowEmitted() {
+        long limit = rowLimit;
+        if (limit > 0 && rowsEmitted.incrementAndGet() >= limit) {
+            limitReached = true;
+        }
+    }
+
+    /**
+     * True once no further rows should be produced: cancelled, interrupted or the row limit was reached.
+     */
+    boolean shouldStop() {
+        return cancelled || limitReached || Thread.currentThread().isInterrupted();
+    }
+
+    void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Conversion was cancelled");
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.overb.jsontocsv.libs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream over a byte range of a file, read with positional channel reads straight into the caller's buffer, so
+ * several streams can read parts of the same file side by side. Closing it releases the file at once; it stands in for
+ * {@link MappedFileInputStream} where mappings cannot be released before a garbage collection.
+ */
+public final class FileRangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+    private FileRangeInputStream(FileChannel channel, long start, long end) throws IOException {
+        this.channel = channel;
+        this.end = end < 0 ? channel.size() : Math.min(end, channel.size());
+        this.position = Math.min(start, this.end);
+    }
+
+    public static FileRangeInputStream open(Path path) throws IOException {
+        return open(path, 0, -1);
+    }
+
+    /**
+     * Reads only the bytes from <code>start</code> up to <code>end</code> (exclusive, -1 for the end of the file).
+     */
+    public static FileRangeInputStream open(Path path, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new FileRangeInputStream(channel, start, end);
+        } catch (IOException error) {
+            channel.close();
+            throw error;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        int count = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, end - position)), position);
+        if (count < 0) {
+            return -1;
+        }
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
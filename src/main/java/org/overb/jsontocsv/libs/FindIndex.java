@@ -0,0 +1,75 @@
+package org.overb.jsontocsv.libs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash index over the objects a FIND formula scans, keyed by the text of their compare field. It answers exactly what
+ * the linear scan would: the first object whose field matches, where a null field only matches a missing search value
+ * and the scan gives up at the first object that lacks the field.
+ */
+final class FindIndex {
+
+    private static final FindIndex EMPTY = new FindIndex(Map.of(), null);
+
+    private final Map<String, JsonNode> byText;
+    private final JsonNode firstNull;
+
+    private FindIndex(Map<String, JsonNode> byText, JsonNode firstNull) {
+        this.byText = byText;
+        this.firstNull = firstNull;
+    }
+
+    static FindIndex build(JsonNode parentNode, String compareField) {
+        final Iterable<JsonNode> nodesToIndex;
+        if (parentNode.isArray()) {
+            nodesToIndex = parentNode;
+        } else if (parentNode.isObject()) {
+            nodesToIndex = Collections.singleton(parentNode);
+        } else {
+            return EMPTY;
+        }
+        Map<String, JsonNode> byText = new HashMap<>();
+        JsonNode firstNull = null;
+        for (JsonNode node : nodesToIndex) {
+            JsonNode compareNode = node.path(compareField);
+            if (compareNode.isMissingNode()) {
+                break;
+            }
+            if (compareNode.isNull() && firstNull == null) {
+                firstNull = node;
+            }
+            if (compareNode.isValueNode()) {
+                byText.putIfAbsent(compareNode.asText(), node);
+            }
+        }
+        return new FindIndex(byText, firstNull);
+    }
+
+    /**
+     * Returns the first matching object, or null when there is none.
+     */
+    JsonNode find(String searchValue) {
+        return searchValue == null ? firstNull : byText.get(searchValue);
+    }
+
+    /**
+     * Indexes built for one document, created on first use and shared by all threads of a conversion.
+     */
+    static final class Cache {
+        private final Map<Key, FindIndex> indexes = new ConcurrentHashMap<>();
+
+        FindIndex get(JsonNode loadedJson, CompiledFormula formula) {
+            Key key = new Key(formula.lookupParent, formula.compareField);
+            return indexes.computeIfAbsent(key,
+                    k -> build(formula.lookupParent.navigate(loadedJson), formula.compareField));
+        }
+    }
+
+    private record Key(CompiledPath parent, String compareField) {
+    }
+}
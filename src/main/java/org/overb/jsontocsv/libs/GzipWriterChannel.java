@@ -0,0 +1,129 @@
+package org.overb.jsontocsv.libs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip-compressing channel that deflates on a dedicated thread. Written bytes are copied into one of a few reusable
+ * blocks and queued; the compressor thread deflates them into the target while the caller keeps encoding rows, and the
+ * caller only waits when every block is still queued.
+ */
+public final class GzipWriterChannel implements WritableByteChannel {
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int BLOCK_COUNT = 4;
+    private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+    private static final Block END = new Block(new byte[0], 0);
+
+    private final OutputStream target;
+    private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(BLOCK_COUNT);
+    // one more slot than there are blocks, so the end marker can always be queued
+    private final BlockingQueue<Block> filled = new ArrayBlockingQueue<>(BLOCK_COUNT + 1);
+    private final Thread compressor;
+    private volatile IOException failure;
+    private boolean open = true;
+
+    private record Block(byte[] bytes, int length) {
+    }
+
+    public GzipWriterChannel(WritableByteChannel target) throws IOException {
+        this.target = new GZIPOutputStream(Channels.newOutputStream(target), DEFLATE_BUFFER_SIZE);
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            free.add(new byte[BLOCK_SIZE]);
+        }
+        this.compressor = Thread.ofPlatform().daemon().name("gzip-writer").start(this::compress);
+    }
+
+    private void compress() {
+        try (target) {
+            while (true) {
+                Block block = filled.take();
+                if (block == END) {
+                    break;
+                }
+                // after a failure keep taking blocks so the writer never waits for a free one
+                if (failure == null) {
+                    try {
+                        target.write(block.bytes, 0, block.length);
+                    } catch (IOException error) {
+                        failure = error;
+                    }
+                }
+                free.add(block.bytes);
+            }
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Compression was interrupted");
+        } catch (IOException error) {
+            if (failure == null) {
+                failure = error;
+            }
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int written = 0;
+        while (source.hasRemaining()) {
+            checkFailure();
+            byte[] bytes;
+            try {
+                bytes = free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Writing was interrupted");
+            }
+            int length = Math.min(source.remaining(), bytes.length);
+            source.get(bytes, 0, length);
+            filled.add(new Block(bytes, length));
+            written += length;
+        }
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Waits for the queued blocks to be compressed, then finishes the gzip stream and closes the target.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        filled.add(END);
+        boolean interrupted = false;
+        while (compressor.isAlive()) {
+            try {
+                compressor.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        IOException error = failure;
+        if (error != null) {
+            throw error;
+        }
+    }
+}
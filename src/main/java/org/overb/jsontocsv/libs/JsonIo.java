@@ -1,45 +1,201 @@
 package org.overb.jsontocsv.libs;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.NullNode;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.zip.GZIPInputStream;
 
 public final class JsonIo {
 
     public static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
 
     public static JsonNode loadJsonFile(File file) throws Exception {
-        boolean isGzip = file.getName().endsWith(".gz");
-        String content = "";
-        try (InputStream raw = Files.newInputStream(file.toPath(), StandardOpenOption.READ);
-             InputStream in = isGzip ? new GZIPInputStream(raw) : raw) {
-            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        if (NdjsonSplitter.isNdjson(file)) {
+            List<NdjsonSplitter.Range> ranges = NdjsonSplitter.split(file);
+            if (ranges.size() > 1) {
+                try {
+                    return NdjsonSplitter.readTree(file, ranges);
+                } catch (IOException ignore) {
+                    // read it again in one piece: either it parses after all or the error points at the right place
+                }
+            }
         }
-        String trimmed = content.trim().replaceAll("\r", "");
+        try (JsonParser parser = createParser(file)) {
+            JsonToken first = parser.nextToken();
+            if (first == null) {
+                return MissingNode.getInstance();
+            }
+            JsonNode firstValue = MAPPER.readTree(parser);
+            if (first == JsonToken.START_ARRAY) {
+                return firstValue;
+            }
+            // several root values: objects separated by commas, newlines (JSONL) or nothing at all
+            if (parser.nextToken() == null) {
+                return firstValue;
+            }
+            ArrayNode arrayNode = MAPPER.createArrayNode();
+            arrayNode.add(firstValue);
+            do {
+                JsonNode value = MAPPER.readTree(parser);
+                arrayNode.add(value);
+            } while (parser.nextToken() != null);
+            return arrayNode;
+        }
+    }
 
-        if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
-            return MAPPER.readTree(trimmed);
+    /**
+     * Loads <code>file</code> using its index when there is one: the top-level records are then parsed in parallel
+     * ranges, whatever the layout of the file.
+     */
+    public static JsonNode loadJsonFile(File file, SidecarIndex index) throws Exception {
+        List<NdjsonSplitter.Range> ranges = index == null ? List.of() : index.ranges();
+        if (ranges.size() > 1) {
+            return NdjsonSplitter.readTree(file, ranges);
         }
-        if (trimmed.contains("},{")) {
-            String wrapped = "[" + trimmed + "]";
-            return MAPPER.readTree(wrapped);
+        return loadJsonFile(file);
+    }
+
+    /**
+     * Reads the records found at <code>rootPath</code> one by one without building the document tree, so memory is
+     * bounded by the largest single record. The records are those the tree path yields, i.e.
+     * <code>toRecordList(JsonPath.navigate(loadJsonFile(file), rootPath))</code>: the elements of the array at the
+     * root, or the value there as a single record, a missing one when the root is not found. As in the tree, several
+     * root values (JSONL, concatenated objects) form one array, so a non-empty root path finds nothing in them; finding
+     * that out reads past the first value once before streaming.
+     */
+    public static long streamRecords(File file, String rootPath, Consumer<JsonNode> recordConsumer) throws IOException {
+        String[] segments = CompiledPath.of(rootPath).segments();
+        if (segments.length > 0 && hasSeveralRootValues(file)) {
+            recordConsumer.accept(MissingNode.getInstance());
+            return 1;
         }
-        if (trimmed.startsWith("{") && trimmed.contains("}\n{")) {
-            ArrayNode arrayNode = MAPPER.createArrayNode();
-            for (String line : trimmed.split("\n")) {
-                if (line.isBlank()) continue;
-                arrayNode.add(MAPPER.readTree(line));
+        try (JsonParser parser = createParser(file)) {
+            return streamRecords(parser, segments, recordConsumer);
+        }
+    }
+
+    private static boolean hasSeveralRootValues(File file) throws IOException {
+        try (JsonParser parser = createParser(file)) {
+            JsonToken first = parser.nextToken();
+            if (first == null || first == JsonToken.START_ARRAY) {
+                return false;
             }
-            return arrayNode;
+            parser.skipChildren();
+            return parser.nextToken() != null;
         }
-        return MAPPER.readTree(trimmed);
     }
-}
\ No newline at end of file
+
+    private static long streamRecords(JsonParser parser, String[] segments, Consumer<JsonNode> recordConsumer) throws IOException {
+        JsonToken first = parser.nextToken();
+        if (first == null) {
+            recordConsumer.accept(MissingNode.getInstance());
+            return 1;
+        }
+        if (segments.length > 0) {
+            return streamRecordsAt(parser, segments, 0, recordConsumer);
+        }
+        if (first == JsonToken.START_ARRAY) {
+            // values after a top-level array are ignored, as when loading
+            return streamRecordsAt(parser, segments, 0, recordConsumer);
+        }
+        return streamRootValues(parser, recordConsumer);
+    }
+
+    /**
+     * Reads every root value from the current token on as one record, the way several root values become the elements
+     * of the loaded document.
+     */
+    static long streamRootValues(JsonParser parser, Consumer<JsonNode> recordConsumer) throws IOException {
+        long records = 0;
+        for (JsonToken token = parser.currentToken(); token != null; token = parser.nextToken()) {
+            recordConsumer.accept(readValue(parser));
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * Follows <code>segments</code> like {@link CompiledPath#navigate(JsonNode)}: anything but an object on the way, or
+     * a missing field, ends in a single missing record.
+     */
+    private static long streamRecordsAt(JsonParser parser, String[] segments, int depth, Consumer<JsonNode> recordConsumer) throws IOException {
+        if (depth == segments.length) {
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                recordConsumer.accept(readValue(parser));
+                return 1;
+            }
+            long records = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                recordConsumer.accept(readValue(parser));
+                records++;
+            }
+            return records;
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            recordConsumer.accept(MissingNode.getInstance());
+            return 1;
+        }
+        long records = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            parser.nextToken();
+            if (records < 0 && fieldName.equals(segments[depth])) {
+                records = streamRecordsAt(parser, segments, depth + 1, recordConsumer);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (records < 0) {
+            recordConsumer.accept(MissingNode.getInstance());
+            return 1;
+        }
+        return records;
+    }
+
+    static JsonNode readValue(JsonParser parser) throws IOException {
+        JsonNode value = MAPPER.readTree(parser);
+        return value == null ? NullNode.getInstance() : value;
+    }
+
+    public static JsonParser createParser(File file) throws IOException {
+        return MAPPER.getFactory().createParser(new RootValueSeparatorInputStream(openInput(file)));
+    }
+
+    public static InputStream openInput(File file) throws IOException {
+        if (!isGzip(file)) {
+            return MappedFileInputStream.open(file.toPath());
+        }
+        InputStream raw = Files.newInputStream(file.toPath(), StandardOpenOption.READ);
+        try {
+            BufferedInputStream buffered = new BufferedInputStream(raw, GZIP_BUFFER_SIZE);
+            if (BgzfInputStream.isBgzf(buffered)) {
+                return new BgzfInputStream(buffered, Runtime.getRuntime().availableProcessors());
+            }
+            // inflate on a thread of its own so parsing does not wait for it
+            return new PrefetchInputStream(new GZIPInputStream(buffered, GZIP_BUFFER_SIZE));
+        } catch (IOException error) {
+            raw.close();
+            throw error;
+        }
+    }
+
+    public static boolean isGzip(File file) {
+        return file.getName().toLowerCase().endsWith(".gz");
+    }
+}
@@ -2,9 +2,10 @@ package org.overb.jsontocsv.libs;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.overb.jsontocsv.dto.RootCandidate;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.regex.Pattern;
 
 public class JsonRootDetector {
     /*
@@ -28,28 +29,41 @@ public class JsonRootDetector {
         - Field names like items, records, rows, data, results, list, entries: small boost
     - Uniqueness against siblings
         - If multiple arrays exist, prefer the one whose objects align with column-like fields (shared keys), not arrays of primitives or mixed.
+    Only arrays a root path can name are candidates: a path cannot cross an array (JsonPath.navigate finds nothing
+    there), so the walk does not descend into array elements.
+    Cost is bounded: one walk over the objects of the tree finds the candidates, only the first elements of each array
+    are sampled, and key sets are kept as bottom-k sketches of their hashes, which give the exact Jaccard similarity for
+    objects with up to SKETCH_SIZE keys and an estimate above that.
      */
 
+    private static final int SAMPLE_ELEMENTS = 20;
+    private static final int SKETCH_SIZE = 64;
+    private static final int KEY_BUDGET = 1024;
+    private static final int MANY_KEYS = 60;
+    private static final Pattern STRONG_NAME_HINT = Pattern.compile("(items|records|rows|results|data|list|entries)$");
+    private static final Pattern WEAK_NAME_HINT = Pattern.compile("(users|orders|products|events)$");
+
     public static Optional<String> detectSuggestedRoot(JsonNode root) {
-        List<Candidate> candidates = new ArrayList<>();
-        collectArrays(root, "", 0, candidates);
-        if (candidates.isEmpty()) return Optional.empty();
+        return rankCandidates(root, 1).stream().findFirst().map(RootCandidate::path);
+    }
 
-        for (Candidate c : candidates) {
-            analyzeArray(c);
-            score(c);
-        }
-        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
-        Candidate best = candidates.get(0);
-        // Optional: require a minimal score to auto-fill, otherwise just suggest
-        return best.score > 1.5 ? Optional.of(best.path) : Optional.of(best.path);
+    /**
+     * The <code>limit</code> best scoring arrays of the document, best first; arrays scoring the same keep the order
+     * in which they were found.
+     */
+    public static List<RootCandidate> rankCandidates(JsonNode root, int limit) {
+        List<Candidate> ranked = new ArrayList<>();
+        collectArrays(root, "", 0, ranked);
+        ranked.forEach(JsonRootDetector::score);
+        ranked.sort((a, b) -> Double.compare(b.score, a.score));
+        return ranked.stream()
+                .limit(limit)
+                .map(c -> new RootCandidate(c.path, c.score, c.size, c.unionKeys.size()))
+                .toList();
     }
 
     private static void collectArrays(JsonNode node, String path, int depth, List<Candidate> out) {
         if (node == null) return;
-        if (node.isArray()) {
-            out.add(new Candidate(path, depth, (ArrayNode) node));
-        }
         if (node.isObject()) {
             node.fieldNames().forEachRemaining(fn -> {
                 JsonNode child = node.get(fn);
@@ -57,79 +71,74 @@ public class JsonRootDetector {
                 collectArrays(child, nextPath, depth + 1, out);
             });
         } else if (node.isArray()) {
-            // dive into first few elements to find nested arrays (rare but possible)
-            int i = 0;
-            for (JsonNode child : node) {
-                if (i++ >= 5) break;
-                collectArrays(child, path, depth + 1, out);
-            }
-        }
-    }
-
-    private static void analyzeArray(Candidate c) {
-        ArrayNode arr = c.array;
-        int size = arr.size();
-        c.size = size;
-        int sample = Math.min(size, 20);
-
-        int objCount = 0, arrCount = 0, primCount = 0;
-        List<Set<String>> keySets = new ArrayList<>();
-        int i = 0;
-        for (JsonNode el : arr) {
-            if (i++ >= sample) break;
-            if (el.isObject()) {
-                objCount++;
-                Set<String> keys = new HashSet<>();
-                el.fieldNames().forEachRemaining(keys::add);
-                keySets.add(keys);
-            } else if (el.isArray()) {
-                arrCount++;
-            } else {
-                primCount++;
-            }
+            out.add(new Candidate(path, depth, (ArrayNode) node));
         }
-        c.objectElemCount = objCount;
-        c.arrayElemCount = arrCount;
-        c.primitiveElemCount = primCount;
-
-        // Homogeneity via average Jaccard similarity between key sets
-        c.avgKeyJaccard = averageJaccard(keySets);
-        c.unionKeyCount = keySets.stream().flatMap(Set::stream).collect(Collectors.toSet()).size();
-
-        // Name hint
-        String lastName = c.path.contains(".") ? c.path.substring(c.path.lastIndexOf('.') + 1) : c.path;
-        c.nameHintBoost = nameHint(lastName);
     }
 
-    private static double averageJaccard(List<Set<String>> sets) {
-        int n = sets.size();
+    /**
+     * Average pairwise Jaccard similarity of the sampled key sets.
+     */
+    private static double averageJaccard(List<long[]> sketches) {
+        int n = sketches.size();
         if (n < 2) return 0.0;
         double sum = 0.0;
         int pairs = 0;
         for (int i = 0; i < n; i++) {
             for (int j = i + 1; j < n; j++) {
-                sum += jaccard(sets.get(i), sets.get(j));
+                sum += jaccard(sketches.get(i), sketches.get(j));
                 pairs++;
             }
         }
         return pairs == 0 ? 0.0 : (sum / pairs);
     }
 
-    private static double jaccard(Set<String> a, Set<String> b) {
-        if (a.isEmpty() && b.isEmpty()) return 1.0;
-        Set<String> inter = new HashSet<>(a);
-        inter.retainAll(b);
-        Set<String> uni = new HashSet<>(a);
-        uni.addAll(b);
-        return uni.isEmpty() ? 0.0 : ((double) inter.size() / (double) uni.size());
+    /**
+     * Jaccard similarity from two bottom-k sketches: among the smallest hashes of the union, the share found in both.
+     */
+    private static double jaccard(long[] a, long[] b) {
+        if (a.length == 0 && b.length == 0) return 1.0;
+        int i = 0, j = 0, union = 0, intersection = 0;
+        while (union < SKETCH_SIZE && (i < a.length || j < b.length)) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                i++;
+            } else if (i >= a.length || b[j] < a[i]) {
+                j++;
+            } else {
+                intersection++;
+                i++;
+                j++;
+            }
+            union++;
+        }
+        return union == 0 ? 0.0 : ((double) intersection / (double) union);
+    }
+
+    private static long[] keySketch(JsonNode object) {
+        long[] hashes = new long[Math.min(object.size(), KEY_BUDGET)];
+        Iterator<String> names = object.fieldNames();
+        int count = 0;
+        while (count < hashes.length && names.hasNext()) {
+            hashes[count++] = hash(names.next());
+        }
+        Arrays.sort(hashes, 0, count);
+        return Arrays.copyOf(hashes, Math.min(count, SKETCH_SIZE));
+    }
+
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h ^ (h >>> 29);
     }
 
     private static double nameHint(String name) {
         if (name == null) return 0.0;
         String n = name.toLowerCase(Locale.ROOT);
         // Light boosts
-        if (n.matches(".*(items|records|rows|results|data|list|entries)$")) return 0.25;
-        if (n.matches(".*(users|orders|products|events)$")) return 0.15;
+        if (STRONG_NAME_HINT.matcher(n).find()) return 0.25;
+        if (WEAK_NAME_HINT.matcher(n).find()) return 0.15;
         return 0.0;
     }
 
@@ -151,11 +160,12 @@ public class JsonRootDetector {
         score -= primRatio * 1.0;         // primitives unlikely to be row-level
 
         // Homogeneity (consistent object shape)
-        score += Math.min(1.0, c.avgKeyJaccard) * 0.8;
+        score += Math.min(1.0, averageJaccard(c.keySketches)) * 0.8;
 
         // Keys richness (prefer some columns, but avoid absurdly large)
-        if (c.unionKeyCount >= 2 && c.unionKeyCount <= 60) score += 0.6;
-        else if (c.unionKeyCount > 60) score -= 0.2;
+        int unionKeyCount = c.unionKeys.size();
+        if (unionKeyCount >= 2 && unionKeyCount <= MANY_KEYS) score += 0.6;
+        else if (unionKeyCount > MANY_KEYS) score -= 0.2;
 
         // Size: prefer non-empty; small positive effect
         if (c.size == 0) score -= 0.5;
@@ -166,26 +176,44 @@ public class JsonRootDetector {
         score -= Math.max(0, c.depth - 3) * 0.1;
 
         // Name hints
-        score += c.nameHintBoost;
+        String lastName = c.path.contains(".") ? c.path.substring(c.path.lastIndexOf('.') + 1) : c.path;
+        score += nameHint(lastName);
 
         c.score = score;
     }
 
+    /**
+     * Statistics of one array, from its first {@value #SAMPLE_ELEMENTS} elements.
+     */
     private static class Candidate {
         final String path;
         final int depth;
-        final ArrayNode array;
-        int size;
+        final int size;
         int objectElemCount, arrayElemCount, primitiveElemCount;
-        int unionKeyCount;
-        double avgKeyJaccard;
-        double nameHintBoost;
+        final List<long[]> keySketches = new ArrayList<>();
+        /** Distinct keys of the sampled objects, up to {@value #KEY_BUDGET}. */
+        final Set<String> unionKeys = new HashSet<>();
         double score;
 
         Candidate(String path, int depth, ArrayNode array) {
             this.path = path;
             this.depth = depth;
-            this.array = array;
+            this.size = array.size();
+            for (JsonNode el : array) {
+                if (objectElemCount + arrayElemCount + primitiveElemCount >= SAMPLE_ELEMENTS) break;
+                if (el.isObject()) {
+                    objectElemCount++;
+                    keySketches.add(keySketch(el));
+                    Iterator<String> names = el.fieldNames();
+                    while (unionKeys.size() < KEY_BUDGET && names.hasNext()) {
+                        unionKeys.add(names.next());
+                    }
+                } else if (el.isArray()) {
+                    arrayElemCount++;
+                } else {
+                    primitiveElemCount++;
+                }
+            }
         }
     }
 }
@@ -2,8 +2,15 @@ package org.overb.jsontocsv.libs;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.overb.jsontocsv.dto.InferredSchema;
+import org.overb.jsontocsv.enums.SchemaInferenceModes;
 
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.stream.IntStream;
 
 public final class JsonSchemaService {
 
@@ -51,26 +58,85 @@ public final class JsonSchemaService {
     }
 
     public static JsonSchemaHelper.Schema buildJsonSchema(JsonNode node) {
-        if (node.isObject()) {
-            JsonSchemaHelper.ObjectSchema objectSchema = new JsonSchemaHelper.ObjectSchema();
-            Iterator<String> names = node.fieldNames();
-            while (names.hasNext()) {
-                String key = names.next();
-                JsonNode child = node.get(key);
-                objectSchema.fields.put(key, buildJsonSchema(child));
+        return new SchemaBuilder(SchemaInferenceModes.FULL, 0).build(node);
+    }
+
+    /**
+     * Infers the schema from at most <code>sampleSize</code> elements of every array: the first ones, or a reservoir
+     * sample spread over the whole array. The sample is merged in document order, so fields keep the order the full
+     * schema would give them. Large documents get a schema in milliseconds; {@link InferredSchema#complete()} tells
+     * whether a full pass could still add fields.
+     */
+    public static InferredSchema inferJsonSchema(JsonNode node, SchemaInferenceModes mode, int sampleSize) {
+        if (mode == null || mode == SchemaInferenceModes.FULL || sampleSize <= 0) {
+            return new InferredSchema(buildJsonSchema(node), true);
+        }
+        SchemaBuilder builder = new SchemaBuilder(mode, sampleSize);
+        JsonSchemaHelper.Schema schema = builder.build(node);
+        return new InferredSchema(schema, builder.complete);
+    }
+
+    private static final class SchemaBuilder {
+        private static final long SAMPLE_SEED = 0x5EEDL;
+
+        private final SchemaInferenceModes mode;
+        private final int sampleSize;
+        private final Random random = new Random(SAMPLE_SEED);
+        private boolean complete = true;
+
+        private SchemaBuilder(SchemaInferenceModes mode, int sampleSize) {
+            this.mode = mode;
+            this.sampleSize = sampleSize;
+        }
+
+        private JsonSchemaHelper.Schema build(JsonNode node) {
+            if (node.isObject()) {
+                JsonSchemaHelper.ObjectSchema objectSchema = new JsonSchemaHelper.ObjectSchema();
+                Iterator<String> names = node.fieldNames();
+                while (names.hasNext()) {
+                    String key = names.next();
+                    JsonNode child = node.get(key);
+                    objectSchema.fields.put(key, build(child));
+                }
+                return objectSchema;
+            }
+            if (node.isArray()) {
+                ArrayNode array = (ArrayNode) node;
+                JsonSchemaHelper.Schema merged = null;
+                int[] sample = sampleIndexes(array.size());
+                int count = sample == null ? array.size() : sample.length;
+                for (int i = 0; i < count; i++) {
+                    // a refine pass runs on a worker thread and stops when it is cancelled
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException("Schema inference was cancelled");
+                    }
+                    JsonSchemaHelper.Schema child = build(array.get(sample == null ? i : sample[i]));
+                    merged = merged == null ? child : merged.merge(child);
+                }
+                JsonSchemaHelper.Schema elementSchema = (merged != null) ? merged : new JsonSchemaHelper.PrimitiveSchema();
+                return new JsonSchemaHelper.ArraySchema(elementSchema, array.size());
             }
-            return objectSchema;
+            return new JsonSchemaHelper.PrimitiveSchema();
         }
-        if (node.isArray()) {
-            ArrayNode array = (ArrayNode) node;
-            JsonSchemaHelper.Schema merged = null;
-            for (JsonNode element : array) {
-                JsonSchemaHelper.Schema child = buildJsonSchema(element);
-                merged = merged == null ? child : merged.merge(child);
+
+        /**
+         * Ascending indexes of the elements to merge, or null for all of them.
+         */
+        private int[] sampleIndexes(int size) {
+            if (mode == SchemaInferenceModes.FULL || size <= sampleSize) {
+                return null;
+            }
+            complete = false;
+            if (mode == SchemaInferenceModes.FIRST_N) {
+                return IntStream.range(0, sampleSize).toArray();
+            }
+            // Floyd's algorithm: a uniform sample of sampleSize distinct indexes without walking the whole array
+            Set<Integer> chosen = new HashSet<>(sampleSize * 2);
+            for (int bound = size - sampleSize; bound < size; bound++) {
+                int candidate = random.nextInt(bound + 1);
+                chosen.add(chosen.contains(candidate) ? bound : candidate);
             }
-            JsonSchemaHelper.Schema elementSchema = (merged != null) ? merged : new JsonSchemaHelper.PrimitiveSchema();
-            return new JsonSchemaHelper.ArraySchema(elementSchema, array.size());
+            return chosen.stream().mapToInt(Integer::intValue).sorted().toArray();
         }
-        return new JsonSchemaHelper.PrimitiveSchema();
     }
-}
\ No newline at end of file
+}
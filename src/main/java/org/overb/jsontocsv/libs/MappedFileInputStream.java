@@ -0,0 +1,173 @@
+package org.overb.jsontocsv.libs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream over a memory-mapped byte range of a file. Reads copy straight from the OS page cache into the caller's
+ * buffer, so there are no read calls per block and a file loaded again while definitions are tweaked is served from
+ * memory. Ranges larger than one mapping are mapped chunk by chunk.
+ * <p>
+ * A mapping normally lives until the garbage collector finds its buffer, and on Windows the file stays locked against
+ * renaming, deleting or overwriting until then. Every chunk is therefore unmapped as soon as the stream moves past it
+ * and when the stream is closed. Where this JVM offers no way to unmap, {@link #open(Path, long, long)} reads through
+ * a {@link FileRangeInputStream} instead.
+ */
+public final class MappedFileInputStream extends InputStream {
+
+    private static final long CHUNK_SIZE = 1L << 30;
+    /** <code>sun.misc.Unsafe.invokeCleaner(ByteBuffer)</code>, or null when it is not accessible. */
+    private static final MethodHandle UNMAP = findUnmap();
+
+    private final FileChannel channel;
+    private final long end;
+    private long chunkStart;
+    private MappedByteBuffer chunk;
+    private boolean closed;
+
+    private MappedFileInputStream(FileChannel channel, long start, long end) throws IOException {
+        this.channel = channel;
+        this.end = end < 0 ? channel.size() : Math.min(end, channel.size());
+        this.chunkStart = Math.min(start, this.end);
+    }
+
+    public static InputStream open(Path path) throws IOException {
+        return open(path, 0, -1);
+    }
+
+    /**
+     * Reads only the bytes from <code>start</code> up to <code>end</code> (exclusive, -1 for the end of the file).
+     */
+    public static InputStream open(Path path, long start, long end) throws IOException {
+        if (UNMAP == null) {
+            return FileRangeInputStream.open(path, start, end);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedFileInputStream(channel, start, end);
+        } catch (IOException error) {
+            channel.close();
+            throw error;
+        }
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        return chunk.get() & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        int count = Math.min(length, chunk.remaining());
+        chunk.get(buffer, offset, count);
+        return count;
+    }
+
+    @Override
+    public synchronized long skip(long n) throws IOException {
+        ensureOpen();
+        long position = position();
+        long skipped = Math.max(0, Math.min(n, end - position));
+        long target = position + skipped;
+        if (chunk != null && target <= chunkStart + chunk.limit()) {
+            chunk.position((int) (target - chunkStart));
+        } else {
+            unmap();
+            chunkStart = target;
+        }
+        return skipped;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        ensureOpen();
+        return (int) Math.min(Integer.MAX_VALUE, end - position());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            unmap();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private long position() {
+        return chunk == null ? chunkStart : chunkStart + chunk.position();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private boolean ensureRemaining() throws IOException {
+        ensureOpen();
+        if (chunk != null && chunk.hasRemaining()) {
+            return true;
+        }
+        long next = position();
+        if (next >= end) {
+            return false;
+        }
+        unmap();
+        chunkStart = next;
+        chunk = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(CHUNK_SIZE, end - next));
+        return true;
+    }
+
+    /**
+     * Releases the current chunk right away. Nothing may touch the buffer afterwards, which is why every access goes
+     * through this stream's lock and drops the reference here.
+     */
+    private void unmap() throws IOException {
+        if (chunk == null) {
+            return;
+        }
+        MappedByteBuffer mapped = chunk;
+        chunkStart += mapped.position();
+        chunk = null;
+        try {
+            UNMAP.invokeExact((ByteBuffer) mapped);
+        } catch (Throwable error) {
+            throw new IOException("Cannot unmap the input file", error);
+        }
+    }
+
+    private static MethodHandle findUnmap() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException error) {
+            return null;
+        }
+    }
+}
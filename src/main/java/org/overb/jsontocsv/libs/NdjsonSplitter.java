@@ -0,0 +1,158 @@
+package org.overb.jsontocsv.libs;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits uncompressed newline-delimited JSON into byte ranges that start and end on line boundaries between top-level
+ * values, so the ranges can be parsed independently. A file whose first line is a complete object may still hold
+ * records spread over several lines further on, so the split follows the nesting depth (outside strings) through the
+ * whole file and only cuts at a line break where no object or array is open.
+ */
+public final class NdjsonSplitter {
+
+    static final long RANGE_SIZE = 8L * 1024 * 1024;
+    private static final int PROBE_SIZE = 1024 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    record Range(long start, long end) {
+    }
+
+    /**
+     * True when the file is not compressed and its first line holds one complete JSON object and nothing else.
+     */
+    public static boolean isNdjson(File file) {
+        if (JsonIo.isGzip(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer probe = ByteBuffer.allocate((int) Math.min(PROBE_SIZE, channel.size()));
+            while (probe.hasRemaining()) {
+                if (channel.read(probe) < 0) break;
+            }
+            byte[] bytes = probe.array();
+            int length = probe.position();
+            try (JsonParser parser = JsonIo.MAPPER.getFactory().createParser(bytes, 0, length)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return false;
+                }
+                int valueStart = (int) parser.currentTokenLocation().getByteOffset();
+                parser.skipChildren();
+                int valueEnd = (int) parser.currentLocation().getByteOffset();
+                for (int i = valueStart; i < valueEnd; i++) {
+                    if (bytes[i] == '\n') return false;
+                }
+                for (int i = valueEnd; i < length; i++) {
+                    switch (bytes[i]) {
+                        case '\n' -> {
+                            return true;
+                        }
+                        case ' ', '\t', '\r', ',' -> {
+                        }
+                        default -> {
+                            return false;
+                        }
+                    }
+                }
+                return false;
+            }
+        } catch (IOException error) {
+            // a first line longer than the probe or malformed JSON; the sequential reader reports the latter properly
+            return false;
+        }
+    }
+
+    static List<Range> split(File file) throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            byte[] bytes = buffer.array();
+            long start = 0;
+            long position = 0;
+            int depth = 0;
+            boolean inString = false;
+            boolean escaped = false;
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = bytes[i];
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        } else if (b == '\\') {
+                            escaped = true;
+                        } else if (b == '"') {
+                            inString = false;
+                        }
+                        continue;
+                    }
+                    switch (b) {
+                        case '"' -> inString = true;
+                        case '{', '[' -> depth++;
+                        case '}', ']' -> depth--;
+                        case '\n' -> {
+                            long end = position + i + 1;
+                            if (depth == 0 && end - start >= RANGE_SIZE && end < size) {
+                                ranges.add(new Range(start, end));
+                                start = end;
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                }
+                position += read;
+            }
+            if (start < size) {
+                ranges.add(new Range(start, size));
+            }
+        }
+        return ranges;
+    }
+
+    static JsonParser createParser(File file, Range range) throws IOException {
+        return JsonIo.MAPPER.getFactory().createParser(
+                new RootValueSeparatorInputStream(MappedFileInputStream.open(file.toPath(), range.start(), range.end())));
+    }
+
+    /**
+     * Parses every range on the common pool and joins the records in file order.
+     */
+    static ArrayNode readTree(File file, List<Range> ranges) throws IOException {
+        List<List<JsonNode>> parsed;
+        try {
+            parsed = ranges.parallelStream().map(range -> {
+                List<JsonNode> values = new ArrayList<>();
+                try (JsonParser parser = createParser(file, range)) {
+                    while (parser.nextToken() != null) {
+                        values.add(JsonIo.MAPPER.readTree(parser));
+                    }
+                } catch (IOException error) {
+                    throw new UncheckedIOException(error);
+                }
+                return values;
+            }).toList();
+        } catch (UncheckedIOException error) {
+            throw error.getCause();
+        }
+        ArrayNode arrayNode = JsonIo.MAPPER.createArrayNode();
+        parsed.forEach(arrayNode::addAll);
+        return arrayNode;
+    }
+}
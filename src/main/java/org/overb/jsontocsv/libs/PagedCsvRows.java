@@ -0,0 +1,208 @@
+package org.overb.jsontocsv.libs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import org.overb.jsontocsv.dto.CsvColumnDefinition;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Preview rows that are expanded on demand. Building it runs one counting pass over the records and keeps only the
+ * index of the first row of every record and where in its record every page starts; rows are then expanded a page at a
+ * time when asked for, resuming the expansion of a record that fans out in the middle, and only the most recently used
+ * pages are kept, so previewing millions of rows needs memory for the index and a few pages only. The records come from
+ * a loaded tree or, through its {@link SidecarIndex}, straight from a file that was never loaded.
+ */
+public final class PagedCsvRows {
+
+    private static final int PAGE_SIZE = 256;
+    private static final int MAX_CACHED_PAGES = 16;
+    private static final int READ_BATCH = 1024;
+
+    private final JsonNode loadedJson;
+    private final IntFunction<JsonNode> records;
+    private final int[] firstRows;
+    private final int[][] pageStarts;
+    private final boolean fannedOut;
+    private final CsvColumnPlan plan;
+    private final Map<Integer, String[][]> pages = new LinkedHashMap<>(MAX_CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String[][]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    private PagedCsvRows(JsonNode loadedJson, IntFunction<JsonNode> records, int[] firstRows, int[][] pageStarts, boolean fannedOut,
+                         List<CsvColumnDefinition> definitions) {
+        this.loadedJson = loadedJson;
+        this.records = records;
+        this.firstRows = firstRows;
+        this.pageStarts = pageStarts;
+        this.fannedOut = fannedOut;
+        this.plan = CsvColumnPlan.compile(definitions, CsvRowExpander.headersFrom(definitions));
+    }
+
+    /**
+     * Counts the rows of at most <code>limit</code> preview rows (0 for all), one slot per definition. Cancelling
+     * <code>control</code> or interrupting the calling thread aborts it with a CancellationException.
+     */
+    public static PagedCsvRows index(JsonNode loadedJson, String rootPath, List<CsvColumnDefinition> definitions, int limit, ExpansionControl control) {
+        if (definitions == null || definitions.isEmpty() || loadedJson == null) {
+            return new PagedCsvRows(loadedJson, i -> null, new int[]{0}, new int[0][], false, List.of());
+        }
+        List<JsonNode> records = CsvRowExpander.toRecordList(JsonPath.navigate(loadedJson, rootPath));
+        RowCounter counter = new RowCounter(loadedJson, definitions, records.size(), limit, control);
+        for (JsonNode record : records) {
+            if (counter.isDone()) {
+                break;
+            }
+            counter.count(record);
+        }
+        return counter.rows(records::get);
+    }
+
+    /**
+     * The same for the top-level records of <code>file</code> (the elements of its root array or its root values), read
+     * from disk through its <code>index</code> instead of a loaded tree: counting parses them in batches, and a page
+     * parses only the records it shows. FIND formulas need the whole document, so callers must load the tree instead
+     * when {@link CsvRowExpander#requiresDocument(List)} is true. A record that cannot be read any more fails the page
+     * asking for it with an {@link UncheckedIOException}.
+     */
+    public static PagedCsvRows index(File file, SidecarIndex index, List<CsvColumnDefinition> definitions, int limit, ExpansionControl control)
+            throws IOException {
+        JsonNode document = MissingNode.getInstance();
+        if (definitions == null || definitions.isEmpty() || index == null) {
+            return new PagedCsvRows(document, i -> null, new int[]{0}, new int[0][], false, List.of());
+        }
+        int recordCount = index.recordCount();
+        RowCounter counter = new RowCounter(document, definitions, recordCount, limit, control);
+        for (int from = 0; from < recordCount && !counter.isDone(); from += READ_BATCH) {
+            index.readRecords(file, from, Math.min(recordCount, from + READ_BATCH), record -> {
+                if (!counter.isDone()) {
+                    counter.count(record);
+                }
+            });
+        }
+        return counter.rows(i -> {
+            try {
+                return index.readRecordAt(file, i);
+            } catch (IOException error) {
+                throw new UncheckedIOException(error);
+            }
+        });
+    }
+
+    /**
+     * The counting pass: expands records one after the other without keeping their rows, noting where every record and
+     * every page starts, until all records are counted or the row limit is reached.
+     */
+    private static final class RowCounter {
+        private final JsonNode loadedJson;
+        private final List<CsvColumnDefinition> definitions;
+        private final CsvColumnPlan plan;
+        private final ExpansionControl control;
+        private final int recordCount;
+        private final int[] firstRows;
+        private final List<int[]> pageStarts = new ArrayList<>();
+        private final ObjIntConsumer<int[]> positions;
+        private long rows;
+        private boolean fannedOut;
+        private int indexed;
+
+        RowCounter(JsonNode loadedJson, List<CsvColumnDefinition> definitions, int recordCount, int limit, ExpansionControl control) {
+            this.loadedJson = loadedJson;
+            this.definitions = definitions;
+            this.plan = CsvColumnPlan.compile(definitions, CsvRowExpander.headersFrom(definitions));
+            this.control = control.limitRows(limit);
+            this.recordCount = recordCount;
+            this.firstRows = new int[recordCount + 1];
+            this.positions = (position, depth) -> {
+                if (rows % PAGE_SIZE == 0) {
+                    pageStarts.add(Arrays.copyOf(position, depth));
+                }
+            };
+            control.setTotalRecords(recordCount);
+        }
+
+        boolean isDone() {
+            return indexed >= recordCount || control.isLimitReached() || rows >= Integer.MAX_VALUE;
+        }
+
+        void count(JsonNode record) {
+            long before = rows;
+            CsvRowExpander.streamRecord(loadedJson, record, plan, null, positions, row -> rows++, control);
+            fannedOut |= rows - before > 1;
+            firstRows[++indexed] = (int) Math.min(rows, Integer.MAX_VALUE);
+        }
+
+        /**
+         * The rows of the records counted so far, which <code>records</code> hands out by their index.
+         */
+        PagedCsvRows rows(IntFunction<JsonNode> records) {
+            return new PagedCsvRows(loadedJson, records, Arrays.copyOf(firstRows, indexed + 1), pageStarts.toArray(new int[0][]),
+                    fannedOut, definitions);
+        }
+    }
+
+    /**
+     * The same rows for edited definitions that keep every record's row count (see {@link PreviewUpdate}); the index is
+     * reused and only the pages are expanded again. Such edits keep the path columns and their order, so the fan-outs
+     * and with them the page start positions stay the same.
+     */
+    public PagedCsvRows withDefinitions(List<CsvColumnDefinition> definitions) {
+        return new PagedCsvRows(loadedJson, records, firstRows, pageStarts, fannedOut, definitions);
+    }
+
+    public int size() {
+        return firstRows[firstRows.length - 1];
+    }
+
+    /**
+     * Whether any record expanded into more than one row.
+     */
+    public boolean fannedOut() {
+        return fannedOut;
+    }
+
+    private int recordCount() {
+        return firstRows.length - 1;
+    }
+
+    public synchronized String[] get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Row " + index + " of " + size());
+        }
+        String[][] page = pages.computeIfAbsent(index / PAGE_SIZE, this::expandPage);
+        return page[index % PAGE_SIZE];
+    }
+
+    private String[][] expandPage(int pageIndex) {
+        int pageStart = pageIndex * PAGE_SIZE;
+        int pageEnd = Math.min(size(), pageStart + PAGE_SIZE);
+        int record = Arrays.binarySearch(firstRows, pageStart);
+        if (record < 0) {
+            record = -record - 2;
+        }
+        // records without rows share their offset with the next one; start at the last record beginning here
+        while (record + 1 < recordCount() && firstRows[record + 1] == pageStart) {
+            record++;
+        }
+        String[][] page = new String[pageEnd - pageStart][];
+        int[] nextRow = {0};
+        ExpansionControl control = new ExpansionControl().limitRows(page.length);
+        for (int r = record; r < recordCount() && !control.isLimitReached(); r++) {
+            int[] start = r == record ? pageStarts[pageIndex] : null;
+            CsvRowExpander.streamRecord(loadedJson, records.apply(r), plan, start, null, row -> page[nextRow[0]++] = row, control);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,135 @@
+package org.overb.jsontocsv.libs;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import org.overb.jsontocsv.dto.CsvColumnDefinition;
+import org.overb.jsontocsv.dto.ParallelOptions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Converts an NDJSON file by splitting it into line-aligned byte ranges (see {@link NdjsonSplitter}) that worker
+ * threads parse and expand on their own, each into a CSV segment in memory. Segments are written in file order as soon
+ * as the ones before them are done, so the output equals the sequential conversion, and the number of ranges in flight
+ * is bounded to keep memory at a few segments per thread.
+ */
+public final class ParallelNdjsonConverter {
+
+    /**
+     * Writes the rows of <code>file</code> to <code>writer</code>, which must already hold the header. FIND formulas need
+     * the whole document, so callers must load the tree instead when {@link CsvRowExpander#requiresDocument(List)} is
+     * true, and only files for which {@link NdjsonSplitter#isNdjson(File)} holds can be split.
+     */
+    public static long convert(File file, String rootPath, List<CsvColumnDefinition> definitions, List<String> headers, CsvSink writer,
+                               ParallelOptions parallel) throws IOException {
+        return convert(file, rootPath, definitions, headers, writer, parallel, new ExpansionControl());
+    }
+
+    public static long convert(File file, String rootPath, List<CsvColumnDefinition> definitions, List<String> headers, CsvSink writer,
+                               ParallelOptions parallel, ExpansionControl control) throws IOException {
+        if (definitions == null || definitions.isEmpty() || file == null) {
+            return 0L;
+        }
+        if (CompiledPath.of(rootPath).depth() > 0) {
+            // the lines form one array, where a field path finds nothing: a single record, no point in splitting
+            return CsvRowExpander.streamCsvRows(file, rootPath, definitions, headers, writer, ParallelOptions.SEQUENTIAL, control);
+        }
+        CsvColumnPlan plan = CsvColumnPlan.compile(definitions, headers);
+        int threads = parallel.effectiveThreads();
+        int maxInFlight = threads * 2;
+        Deque<Future<Segment>> pending = new ArrayDeque<>();
+        long rows = 0;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (NdjsonSplitter.Range range : NdjsonSplitter.split(file)) {
+                while (pending.size() >= maxInFlight) {
+                    rows += writeNext(pending, writer, control);
+                }
+                pending.add(pool.submit(() -> {
+                    try {
+                        return convertRange(file, range, plan, writer, control);
+                    } catch (IOException error) {
+                        throw new UncheckedIOException(error);
+                    }
+                }));
+            }
+            while (!pending.isEmpty()) {
+                rows += writeNext(pending, writer, control);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return rows;
+    }
+
+    private static Segment convertRange(File file, NdjsonSplitter.Range range, CsvColumnPlan plan, CsvSink writer,
+                                        ExpansionControl control) throws IOException {
+        JsonNode loadedJson = MissingNode.getInstance();
+        Segment segment = new Segment((int) Math.min(Integer.MAX_VALUE - 8, range.end() - range.start()));
+        CsvFileWriter segmentWriter = new CsvFileWriter(Channels.newChannel(segment), writer.nullStyle());
+        try (JsonParser parser = NdjsonSplitter.createParser(file, range)) {
+            Consumer<String[]> rowConsumer = row -> {
+                segmentWriter.accept(row);
+                segment.rowEnd(segmentWriter.bytesWritten());
+            };
+            parser.nextToken();
+            JsonIo.streamRootValues(parser, record -> CsvRowExpander.streamRecord(loadedJson, record, plan, rowConsumer, control));
+        }
+        segmentWriter.close();
+        return segment;
+    }
+
+    private static long writeNext(Deque<Future<Segment>> pending, CsvSink writer, ExpansionControl control) throws IOException {
+        try {
+            Segment segment = pending.poll().get();
+            control.checkCancelled();
+            writer.writeEncoded(segment.bytes(), segment.rowEnds, segment.rows);
+            return segment.rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Conversion was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException ioException) {
+                throw ioException.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static final class Segment extends ByteArrayOutputStream {
+        private int[] rowEnds = new int[1024];
+        private int rows;
+
+        private Segment(int initialSize) {
+            super(initialSize);
+        }
+
+        private void rowEnd(long offset) {
+            if (rows == rowEnds.length) {
+                rowEnds = Arrays.copyOf(rowEnds, rows * 2);
+            }
+            rowEnds[rows++] = (int) offset;
+        }
+
+        private byte[] bytes() {
+            return buf;
+        }
+    }
+}
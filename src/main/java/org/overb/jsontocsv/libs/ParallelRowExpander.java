@@ -0,0 +1,112 @@
+package org.overb.jsontocsv.libs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.overb.jsontocsv.dto.ParallelOptions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Fans record expansion out over a fork-join pool in chunks of records. Expanded rows are always handed to the row
+ * consumer on the calling thread, either in original record order or, in unordered mode, as soon as a chunk is done.
+ * The number of chunks in flight is bounded so streamed inputs keep a bounded memory footprint.
+ */
+final class ParallelRowExpander implements Consumer<JsonNode>, AutoCloseable {
+
+    private static final int CHUNK_SIZE = 256;
+
+    private final JsonNode loadedJson;
+    private final CsvColumnPlan plan;
+    private final Consumer<String[]> rowConsumer;
+    private final ExpansionControl control;
+    private final boolean ordered;
+    private final int maxInFlight;
+    private final ForkJoinPool pool;
+    private final Deque<Future<List<String[]>>> pending = new ArrayDeque<>();
+    private final CompletionService<List<String[]>> completionService;
+    private List<JsonNode> chunk = new ArrayList<>(CHUNK_SIZE);
+    private int inFlight = 0;
+    private long rows = 0;
+
+    ParallelRowExpander(JsonNode loadedJson, CsvColumnPlan plan, Consumer<String[]> rowConsumer, ParallelOptions options, ExpansionControl control) {
+        this.loadedJson = loadedJson;
+        this.plan = plan;
+        this.rowConsumer = rowConsumer;
+        this.control = control;
+        this.ordered = options.ordered();
+        int threads = options.effectiveThreads();
+        this.maxInFlight = threads * 4;
+        this.pool = new ForkJoinPool(threads);
+        this.completionService = ordered ? null : new ExecutorCompletionService<>(pool);
+    }
+
+    @Override
+    public void accept(JsonNode record) {
+        control.checkCancelled();
+        chunk.add(record);
+        if (chunk.size() >= CHUNK_SIZE) {
+            submitChunk();
+        }
+    }
+
+    long finish() {
+        if (!chunk.isEmpty()) {
+            submitChunk();
+        }
+        while (inFlight > 0) {
+            drainOne();
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private void submitChunk() {
+        while (inFlight >= maxInFlight) {
+            drainOne();
+        }
+        List<JsonNode> records = chunk;
+        chunk = new ArrayList<>(CHUNK_SIZE);
+        Callable<List<String[]>> task = () -> {
+            List<String[]> expanded = new ArrayList<>(records.size());
+            for (JsonNode record : records) {
+                CsvRowExpander.streamRecord(loadedJson, record, plan, expanded::add, control);
+            }
+            return expanded;
+        };
+        if (ordered) {
+            pending.add(pool.submit(task));
+        } else {
+            completionService.submit(task);
+        }
+        inFlight++;
+    }
+
+    private void drainOne() {
+        try {
+            Future<List<String[]>> done = ordered ? pending.poll() : completionService.take();
+            List<String[]> expanded = done.get();
+            inFlight--;
+            for (String[] row : expanded) {
+                control.checkCancelled();
+                rowConsumer.accept(row);
+            }
+            rows += expanded.size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Row expansion was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.overb.jsontocsv.libs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads its source on a background thread into a small ring of reusable buffers, so slow sources such as a
+ * {@link java.util.zip.GZIPInputStream} inflate on one core while the caller parses on another. At most
+ * <code>BUFFER_COUNT</code> buffers are filled ahead; the reader blocks until the caller hands one back.
+ */
+public final class PrefetchInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int BUFFER_COUNT = 4;
+    private static final Chunk END = new Chunk(new byte[0], 0, null);
+
+    private final InputStream source;
+    private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final Thread reader;
+    private Chunk current;
+    private int position;
+
+    private record Chunk(byte[] buffer, int length, Exception error) {
+    }
+
+    public PrefetchInputStream(InputStream source) {
+        this.source = source;
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            free.add(new byte[BUFFER_SIZE]);
+        }
+        this.reader = Thread.ofPlatform().daemon().name("input-prefetch").start(this::fill);
+    }
+
+    private void fill() {
+        try (source) {
+            while (true) {
+                byte[] buffer = free.take();
+                int length = source.readNBytes(buffer, 0, buffer.length);
+                if (length > 0) {
+                    filled.put(new Chunk(buffer, length, null));
+                }
+                if (length < buffer.length) {
+                    filled.put(END);
+                    return;
+                }
+            }
+        } catch (InterruptedException | InterruptedIOException e) {
+            // closed by the caller
+        } catch (IOException | RuntimeException error) {
+            filled.offer(new Chunk(null, 0, error));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current.buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current.buffer, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.interrupt();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        while (current == null || position == current.length) {
+            if (current == END) {
+                return false;
+            }
+            if (current != null) {
+                // a failed read keeps failing
+                if (current.error instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (current.error instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                free.add(current.buffer);
+            }
+            try {
+                current = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Reading was interrupted");
+            }
+            position = 0;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package org.overb.jsontocsv.libs;
+
+import org.overb.jsontocsv.dto.CsvColumnDefinition;
+import org.overb.jsontocsv.enums.ColumnTypes;
+
+import java.util.*;
+
+/**
+ * Describes how a preview built for one list of definitions carries over to an edited list without indexing the records
+ * again. That is only possible while the edit cannot change how records fan out into rows or what a formula evaluates
+ * to: renamed columns, added, edited or removed literals, removed formulas and reordered columns qualify; anything that
+ * touches a path or a formula needs a full recompute, and so does any edit that renames, adds or removes a name a
+ * formula refers to.
+ */
+public final class PreviewUpdate {
+
+    private final int[] sources;
+    private final boolean headersOnly;
+
+    private PreviewUpdate(int[] sources, boolean headersOnly) {
+        this.sources = sources;
+        this.headersOnly = headersOnly;
+    }
+
+    /**
+     * Returns the update from <code>previous</code> to <code>current</code>, or null when the preview has to be
+     * recomputed. <code>fannedOut</code> tells whether any previewed record expanded into several rows; their order
+     * follows the order of the path columns, so those can then not be reordered cheaply.
+     */
+    public static PreviewUpdate between(List<CsvColumnDefinition> previous, List<CsvColumnDefinition> current, boolean fannedOut) {
+        if (hasDuplicateNames(previous) || hasDuplicateNames(current)) {
+            return null;
+        }
+        int[] sources = new int[current.size()];
+        boolean[] used = new boolean[previous.size()];
+        Set<String> changedNames = new HashSet<>();
+        for (int j = 0; j < current.size(); j++) {
+            CsvColumnDefinition definition = current.get(j);
+            int i = findUnused(previous, used, definition, definition.getType() == ColumnTypes.LITERAL);
+            if (i < 0 && definition.getType() == ColumnTypes.LITERAL) {
+                sources[j] = -1;
+                changedNames.add(definition.getColumnName());
+                continue;
+            }
+            if (i < 0) {
+                return null;
+            }
+            used[i] = true;
+            sources[j] = i;
+            String previousName = previous.get(i).getColumnName();
+            if (!previousName.equals(definition.getColumnName())) {
+                changedNames.add(previousName);
+                changedNames.add(definition.getColumnName());
+            }
+        }
+        for (int i = 0; i < previous.size(); i++) {
+            if (used[i]) continue;
+            if (previous.get(i).getType() == ColumnTypes.DEFAULT) {
+                return null;
+            }
+            changedNames.add(previous.get(i).getColumnName());
+        }
+
+        List<String> formulas = new ArrayList<>();
+        for (CsvColumnDefinition definition : previous) {
+            if (definition.getType() == ColumnTypes.FORMULA) formulas.add(definition.getJsonSource());
+        }
+        for (CsvColumnDefinition definition : current) {
+            if (definition.getType() == ColumnTypes.FORMULA) formulas.add(definition.getJsonSource());
+        }
+        // formulas see the columns evaluated before them, so with formulas around only literals may move
+        if ((fannedOut || !formulas.isEmpty()) && !keepsOrder(current, sources, !formulas.isEmpty())) {
+            return null;
+        }
+        for (String formula : formulas) {
+            for (String name : changedNames) {
+                if (CustomStringUtils.containsWholeWord(formula, name)) {
+                    return null;
+                }
+            }
+        }
+
+        boolean headersOnly = sources.length == previous.size();
+        for (int j = 0; j < sources.length && headersOnly; j++) {
+            headersOnly = sources[j] == j;
+        }
+        return new PreviewUpdate(sources, headersOnly);
+    }
+
+    /**
+     * True when nothing but column headers changed, so the rows already shown stay valid as they are.
+     */
+    public boolean headersOnly() {
+        return headersOnly;
+    }
+
+    /**
+     * Index of the previous column the given column takes its values from, or -1 for a new literal column.
+     */
+    public int source(int column) {
+        return sources[column];
+    }
+
+    private static int findUnused(List<CsvColumnDefinition> previous, boolean[] used, CsvColumnDefinition definition, boolean sameName) {
+        for (int i = 0; i < previous.size(); i++) {
+            CsvColumnDefinition candidate = previous.get(i);
+            if (!used[i] && candidate.getType() == definition.getType()
+                    && Objects.equals(candidate.getJsonSource(), definition.getJsonSource())
+                    && (!sameName || candidate.getColumnName().equals(definition.getColumnName()))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean keepsOrder(List<CsvColumnDefinition> current, int[] sources, boolean includeFormulas) {
+        int last = -1;
+        for (int j = 0; j < sources.length; j++) {
+            ColumnTypes type = current.get(j).getType();
+            if (type == ColumnTypes.LITERAL || (type == ColumnTypes.FORMULA && !includeFormulas)) continue;
+            if (sources[j] < last) return false;
+            last = sources[j];
+        }
+        return true;
+    }
+
+    private static boolean hasDuplicateNames(List<CsvColumnDefinition> definitions) {
+        Set<String> names = new HashSet<>();
+        for (CsvColumnDefinition definition : definitions) {
+            if (!names.add(definition.getColumnName())) return true;
+        }
+        return false;
+    }
+}
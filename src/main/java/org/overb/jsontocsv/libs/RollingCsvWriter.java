@@ -0,0 +1,172 @@
+package org.overb.jsontocsv.libs;
+
+import org.overb.jsontocsv.dto.SplitOptions;
+import org.overb.jsontocsv.enums.CsvNullStyles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Splits an export into <code>name_0001.csv</code>, <code>name_0002.csv</code>, ... next to the requested path, rolling
+ * to the next file once the current one holds the maximum number of rows or has reached the maximum size in
+ * (uncompressed) CSV bytes. Every file starts with the header. A finished file is closed on a background thread, so
+ * with <code>.csv.gz</code> names it is still being compressed while rows already go to the next one.
+ */
+public final class RollingCsvWriter implements CsvSink {
+
+    private final Path path;
+    private final CsvNullStyles nullStyle;
+    private final String[] header;
+    private final long maxRows;
+    private final long maxBytes;
+    private final List<Path> files = new ArrayList<>();
+    private final List<Future<?>> closing = new ArrayList<>();
+    private final ExecutorService closer = Executors.newSingleThreadExecutor(task -> Thread.ofPlatform().daemon().name("csv-closer").unstarted(task));
+    private CsvFileWriter current;
+    private long currentRows;
+    private long closedBytes;
+
+    RollingCsvWriter(Path path, CsvNullStyles nullStyle, List<String> headers, SplitOptions split) {
+        this.path = path;
+        this.nullStyle = nullStyle;
+        this.header = headers.toArray(new String[0]);
+        this.maxRows = split.maxRows();
+        this.maxBytes = split.maxBytes();
+    }
+
+    /**
+     * Name of the <code>index</code>-th file (1-based): the number goes before the extension, and <code>.csv.gz</code>
+     * counts as one extension.
+     */
+    public static Path partPath(Path path, int index) {
+        String name = path.getFileName().toString();
+        String suffix = "";
+        if (name.toLowerCase().endsWith(".gz")) {
+            suffix = name.substring(name.length() - 3);
+            name = name.substring(0, name.length() - 3);
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            suffix = name.substring(dot) + suffix;
+            name = name.substring(0, dot);
+        }
+        return path.resolveSibling(String.format("%s_%04d%s", name, index, suffix));
+    }
+
+    @Override
+    public void accept(String[] row) {
+        try {
+            if (current == null || isFull()) {
+                roll();
+            }
+            current.writeRow(row);
+            currentRows++;
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    @Override
+    public void writeEncoded(byte[] bytes, int[] rowEnds, int rows) throws IOException {
+        int row = 0;
+        int start = 0;
+        while (row < rows) {
+            if (current == null || isFull()) {
+                roll();
+            }
+            // the same rows accept() would put into this file: the first one always (the file is not full or was just
+            // started, even with a header beyond the size limit), then more while it is below both limits
+            long fileBytes = current.bytesWritten();
+            int end = row + 1;
+            while (end < rows && (maxRows <= 0 || currentRows + end - row < maxRows)
+                    && (maxBytes <= 0 || fileBytes + rowEnds[end - 1] - start < maxBytes)) {
+                end++;
+            }
+            current.writeEncoded(bytes, start, rowEnds[end - 1] - start, end - row);
+            currentRows += end - row;
+            start = rowEnds[end - 1];
+            row = end;
+        }
+    }
+
+    private boolean isFull() {
+        return (maxRows > 0 && currentRows >= maxRows) || (maxBytes > 0 && current.bytesWritten() >= maxBytes);
+    }
+
+    private void roll() throws IOException {
+        if (current != null) {
+            CsvFileWriter finished = current;
+            closedBytes += finished.bytesWritten();
+            current = null;
+            closing.add(closer.submit(() -> {
+                finished.close();
+                return null;
+            }));
+        }
+        Path next = partPath(path, files.size() + 1);
+        current = CsvFileWriter.open(next, nullStyle);
+        files.add(next);
+        current.writeRow(header);
+        currentRows = 0;
+    }
+
+    @Override
+    public CsvNullStyles nullStyle() {
+        return nullStyle;
+    }
+
+    @Override
+    public long bytesWritten() {
+        return closedBytes + (current == null ? 0 : current.bytesWritten());
+    }
+
+    @Override
+    public List<Path> files() {
+        return List.copyOf(files);
+    }
+
+    /**
+     * Closes the current file and waits until every earlier one is closed; an export without rows still gets one file
+     * holding the header.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        try {
+            if (current == null && files.isEmpty()) {
+                roll();
+            }
+            if (current != null) {
+                closedBytes += current.bytesWritten();
+                CsvFileWriter last = current;
+                current = null;
+                last.close();
+            }
+        } catch (IOException error) {
+            failure = error;
+        }
+        for (Future<?> future : closing) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
+                }
+            }
+        }
+        closing.clear();
+        closer.shutdown();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
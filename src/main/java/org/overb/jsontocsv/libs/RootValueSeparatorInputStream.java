@@ -0,0 +1,71 @@
+package org.overb.jsontocsv.libs;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Blanks out commas found between top-level JSON values so that exports written as
+ * <code>{...},{...}</code> can be read by Jackson as a plain sequence of root values.
+ * Works on raw UTF-8 bytes: all structural characters are ASCII and never appear inside
+ * multi-byte sequences.
+ */
+public class RootValueSeparatorInputStream extends FilterInputStream {
+
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+
+    public RootValueSeparatorInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        return b < 0 ? b : filter((byte) b) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int count = super.read(buffer, offset, length);
+        for (int i = offset; i < offset + count; i++) {
+            buffer[i] = filter(buffer[i]);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("skip is not supported");
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private byte filter(byte b) {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '"') {
+                inString = false;
+            }
+            return b;
+        }
+        switch (b) {
+            case '"' -> inString = true;
+            case '{', '[' -> depth++;
+            case '}', ']' -> depth--;
+            case ',' -> {
+                if (depth <= 0) return ' ';
+            }
+            default -> {
+            }
+        }
+        return b;
+    }
+}
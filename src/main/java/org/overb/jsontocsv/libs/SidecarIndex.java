@@ -0,0 +1,326 @@
+package org.overb.jsontocsv.libs;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.overb.jsontocsv.dto.FileStamp;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * What loading a file taught us, kept on disk so the next load can skip it: the full schema, the detected root and the
+ * byte offset of every top-level record (the elements of a root array, or the root values of JSONL and concatenated
+ * objects). An index belongs to one file path and is only used while the file keeps the size and modification time it
+ * had when it was loaded for the index. With the offsets, the file can be parsed in parallel ranges and any record read
+ * on its own; compressed files cannot be seeked, so their index holds no offsets.
+ */
+public final class SidecarIndex {
+
+    private static final int MAGIC = 0x4A324349; // J2CI
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".j2cidx";
+    private static final int MAX_INDEXES = 32;
+
+    private final String path;
+    private final long size;
+    private final long modified;
+    private final JsonSchemaHelper.Schema schema;
+    private final String root;
+    /** Start of every record, followed by the end of the last one; empty when there are none. */
+    private final long[] offsets;
+
+    private SidecarIndex(String path, long size, long modified, JsonSchemaHelper.Schema schema, String root, long[] offsets) {
+        this.path = path;
+        this.size = size;
+        this.modified = modified;
+        this.schema = schema;
+        this.root = root;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Indexes the file of <code>loaded</code> with a schema and root derived from it as it was then loaded; finding the
+     * record offsets takes one pass over the file that skips over every record without building it. Returns null when
+     * the file changed since it was loaded, as schema, root and offsets would then not describe the same content.
+     */
+    public static SidecarIndex build(FileStamp loaded, JsonSchemaHelper.Schema schema, String root) throws IOException {
+        File file = loaded.file();
+        if (!loaded.isCurrent()) {
+            return null;
+        }
+        long[] offsets = JsonIo.isGzip(file) ? new long[0] : scanOffsets(file, loaded.size());
+        if (!loaded.isCurrent()) {
+            return null;
+        }
+        return new SidecarIndex(file.getAbsolutePath(), loaded.size(), loaded.modified(), schema, root, offsets);
+    }
+
+    /**
+     * The index stored for the file of <code>stamp</code>, or null when there is none or it was built for another
+     * size or modification time.
+     */
+    public static SidecarIndex load(FileStamp stamp, Path directory) {
+        File file = stamp.file();
+        Path indexPath = indexPath(directory, file);
+        if (!Files.isRegularFile(indexPath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String path = in.readUTF();
+            long size = in.readLong();
+            long modified = in.readLong();
+            if (!path.equals(file.getAbsolutePath()) || size != stamp.size() || modified != stamp.modified()) {
+                return null;
+            }
+            String root = in.readBoolean() ? in.readUTF() : null;
+            byte[] schemaJson = new byte[in.readInt()];
+            in.readFully(schemaJson);
+            JsonSchemaHelper.Schema schema = fromJson(JsonIo.MAPPER.readTree(schemaJson));
+            int count = in.readInt();
+            long[] offsets = new long[count];
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += readVarLong(in);
+                offsets[i] = previous;
+            }
+            // keeps recently used indexes from being pruned
+            Files.setLastModifiedTime(indexPath, FileTime.fromMillis(System.currentTimeMillis()));
+            return new SidecarIndex(path, size, modified, schema, root, offsets);
+        } catch (IOException | RuntimeException error) {
+            // an unreadable index is rebuilt on the next load
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index into <code>directory</code>, replacing an older one for the same file, and drops the least
+     * recently used indexes beyond the first {@value #MAX_INDEXES}.
+     */
+    public void save(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path indexPath = indexPath(directory, new File(path));
+        Path temporary = Files.createTempFile(directory, "index", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(path);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeBoolean(root != null);
+                if (root != null) {
+                    out.writeUTF(root);
+                }
+                byte[] schemaJson = JsonIo.MAPPER.writer().without(SerializationFeature.INDENT_OUTPUT)
+                        .writeValueAsBytes(toJson(schema));
+                out.writeInt(schemaJson.length);
+                out.write(schemaJson);
+                out.writeInt(offsets.length);
+                long previous = 0;
+                for (long offset : offsets) {
+                    writeVarLong(out, offset - previous);
+                    previous = offset;
+                }
+            }
+            Files.move(temporary, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        prune(directory);
+    }
+
+    public JsonSchemaHelper.Schema schema() {
+        return schema;
+    }
+
+    /**
+     * The root detected when the file was indexed, or null when none was found.
+     */
+    public String root() {
+        return root;
+    }
+
+    public int recordCount() {
+        return Math.max(0, offsets.length - 1);
+    }
+
+    /**
+     * Parses only the <code>index</code>-th top-level record of <code>file</code>.
+     */
+    public JsonNode readRecordAt(File file, int index) throws IOException {
+        JsonNode[] record = new JsonNode[1];
+        readRecords(file, index, index + 1, value -> record[0] = value);
+        return record[0];
+    }
+
+    /**
+     * Parses the top-level records from <code>from</code> up to <code>to</code> (exclusive) of <code>file</code> in
+     * order, with a single parser over their bytes. Fails when the file is no longer the one that was indexed.
+     */
+    public void readRecords(File file, int from, int to, Consumer<JsonNode> recordConsumer) throws IOException {
+        Objects.checkFromToIndex(from, to, recordCount());
+        if (!file.getAbsolutePath().equals(path) || file.length() != size || file.lastModified() != modified) {
+            throw new IOException(file.getName() + " changed since it was indexed");
+        }
+        if (from == to) {
+            return;
+        }
+        try (JsonParser parser = NdjsonSplitter.createParser(file, new NdjsonSplitter.Range(offsets[from], offsets[to]))) {
+            for (int i = from; i < to && parser.nextToken() != null; i++) {
+                recordConsumer.accept(JsonIo.readValue(parser));
+            }
+        }
+    }
+
+    /**
+     * Consecutive records grouped into ranges of about {@link NdjsonSplitter#RANGE_SIZE} bytes each.
+     */
+    List<NdjsonSplitter.Range> ranges() {
+        List<NdjsonSplitter.Range> ranges = new ArrayList<>();
+        int records = recordCount();
+        int first = 0;
+        for (int i = 1; i <= records; i++) {
+            if (i == records || offsets[i] - offsets[first] >= NdjsonSplitter.RANGE_SIZE) {
+                ranges.add(new NdjsonSplitter.Range(offsets[first], offsets[i]));
+                first = i;
+            }
+        }
+        return ranges;
+    }
+
+    private static long[] scanOffsets(File file, long size) throws IOException {
+        long[] offsets = new long[1024];
+        int count = 0;
+        try (JsonParser parser = JsonIo.createParser(file)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return new long[0];
+            }
+            boolean rootArray = token == JsonToken.START_ARRAY;
+            if (rootArray) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (count + 1 >= offsets.length) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException("Indexing was cancelled");
+                    }
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[count++] = parser.currentTokenLocation().getByteOffset();
+                parser.skipChildren();
+                token = parser.nextToken();
+            }
+            if (!rootArray && count == 1) {
+                // a single root object is a document, not a sequence of records
+                return new long[0];
+            }
+            // a root array ends at its closing bracket, a sequence of root values at the end of the file
+            offsets[count++] = rootArray ? parser.currentTokenLocation().getByteOffset() : size;
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    private static Path indexPath(Path directory, File file) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest, 0, 16) + EXTENSION);
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private static void prune(Path directory) throws IOException {
+        List<Path> indexes;
+        try (Stream<Path> files = Files.list(directory)) {
+            indexes = files.filter(file -> file.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparing(SidecarIndex::lastModified).reversed())
+                    .toList();
+        }
+        for (Path stale : indexes.subList(Math.min(MAX_INDEXES, indexes.size()), indexes.size())) {
+            Files.deleteIfExists(stale);
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException error) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static JsonNode toJson(JsonSchemaHelper.Schema schema) {
+        ObjectNode node = JsonIo.MAPPER.createObjectNode();
+        switch (schema) {
+            case JsonSchemaHelper.ObjectSchema object -> {
+                node.put("type", "object");
+                ObjectNode fields = node.putObject("fields");
+                object.fields.forEach((name, field) -> fields.set(name, toJson(field)));
+            }
+            case JsonSchemaHelper.ArraySchema array -> {
+                node.put("type", "array");
+                if (array.size() != null) {
+                    node.put("size", array.size());
+                }
+                node.set("element", toJson(array.elementSchema));
+            }
+            case JsonSchemaHelper.PrimitiveSchema primitive -> node.put("type", "primitive");
+        }
+        return node;
+    }
+
+    private static JsonSchemaHelper.Schema fromJson(JsonNode node) throws IOException {
+        switch (node.path("type").asText()) {
+            case "object" -> {
+                JsonSchemaHelper.ObjectSchema object = new JsonSchemaHelper.ObjectSchema();
+                for (Map.Entry<String, JsonNode> field : node.path("fields").properties()) {
+                    object.fields.put(field.getKey(), fromJson(field.getValue()));
+                }
+                return object;
+            }
+            case "array" -> {
+                Integer size = node.hasNonNull("size") ? node.get("size").asInt() : null;
+                return new JsonSchemaHelper.ArraySchema(fromJson(node.path("element")), size);
+            }
+            case "primitive" -> {
+                return new JsonSchemaHelper.PrimitiveSchema();
+            }
+            default -> throw new IOException("Corrupt index schema");
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt index offsets");
+    }
+}
@@ -0,0 +1,192 @@
+package org.overb.jsontocsv.libs;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import org.overb.jsontocsv.dto.PathStats;
+import org.overb.jsontocsv.dto.StreamedSchema;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.LongConsumer;
+
+/**
+ * Builds the schema of a file straight from the parser's tokens, without a {@link com.fasterxml.jackson.databind.JsonNode}
+ * tree, so memory depends on the number of distinct paths and not on the size of the file. Several root values are
+ * seen as one array holding them, exactly as {@link JsonIo#loadJsonFile(File)} loads them. Where a path holds objects
+ * or arrays in some records and scalars or nulls in others, the schema keeps the structure.
+ */
+public final class StreamingSchemaBuilder {
+
+    private static final int MAX_PATHS = 100_000;
+    private static final int PROGRESS_INTERVAL = 64 * 1024;
+
+    private final LongConsumer progress;
+    private int paths;
+    private boolean truncated;
+    private long values;
+
+    private StreamingSchemaBuilder(LongConsumer progress) {
+        this.progress = progress;
+    }
+
+    private static final class Accumulator {
+        final long[] types = new long[JsonNodeType.values().length];
+        long count;
+        JsonNodeType structure;
+        Map<String, Accumulator> fields;
+        Accumulator elements;
+        long maxArrayLength;
+        long arrayLength = -1;
+        boolean lengthsDiffer;
+
+        void record(JsonNodeType type) {
+            count++;
+            types[type.ordinal()]++;
+            if (structure == null && (type == JsonNodeType.OBJECT || type == JsonNodeType.ARRAY)) {
+                structure = type;
+            }
+        }
+
+        void recordLength(long length) {
+            maxArrayLength = Math.max(maxArrayLength, length);
+            if (arrayLength >= 0 && arrayLength != length) {
+                lengthsDiffer = true;
+            }
+            arrayLength = length;
+        }
+    }
+
+    /**
+     * Reads <code>file</code> once; <code>progress</code> receives the number of input bytes consumed now and then. The
+     * pass stops with a {@link CancellationException} when the calling thread is interrupted.
+     */
+    public static StreamedSchema build(File file, LongConsumer progress) throws IOException {
+        StreamingSchemaBuilder builder = new StreamingSchemaBuilder(progress);
+        try (JsonParser parser = JsonIo.createParser(file)) {
+            return builder.build(parser);
+        }
+    }
+
+    private StreamedSchema build(JsonParser parser) throws IOException {
+        JsonToken first = parser.nextToken();
+        Map<String, PathStats> stats = new LinkedHashMap<>();
+        if (first == null) {
+            return new StreamedSchema(new JsonSchemaHelper.PrimitiveSchema(), stats, false);
+        }
+        Accumulator root = newAccumulator();
+        read(parser, first, root);
+        if (first != JsonToken.START_ARRAY && parser.nextToken() != null) {
+            // several root values: one array of them, with the values read so far as its elements
+            Accumulator values = root;
+            long length = 1;
+            do {
+                read(parser, parser.currentToken(), values);
+                length++;
+            } while (parser.nextToken() != null);
+            root = newAccumulator();
+            root.record(JsonNodeType.ARRAY);
+            root.recordLength(length);
+            root.elements = values;
+        }
+        JsonSchemaHelper.Schema schema = toSchema(root, "", root.count, stats);
+        return new StreamedSchema(schema, stats, truncated);
+    }
+
+    private void read(JsonParser parser, JsonToken token, Accumulator accumulator) throws IOException {
+        if (++values % PROGRESS_INTERVAL == 0) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Schema inference was cancelled");
+            }
+            progress.accept(parser.currentLocation().getByteOffset());
+        }
+        switch (token) {
+            case START_OBJECT -> {
+                accumulator.record(JsonNodeType.OBJECT);
+                for (String name = parser.nextFieldName(); name != null; name = parser.nextFieldName()) {
+                    JsonToken value = parser.nextToken();
+                    Accumulator child = field(accumulator, name);
+                    if (child == null) {
+                        parser.skipChildren();
+                    } else {
+                        read(parser, value, child);
+                    }
+                }
+            }
+            case START_ARRAY -> {
+                accumulator.record(JsonNodeType.ARRAY);
+                if (accumulator.elements == null && paths < MAX_PATHS) {
+                    accumulator.elements = newAccumulator();
+                }
+                long length = 0;
+                for (JsonToken element = parser.nextToken(); element != JsonToken.END_ARRAY; element = parser.nextToken()) {
+                    if (accumulator.elements == null) {
+                        truncated = true;
+                        parser.skipChildren();
+                    } else {
+                        read(parser, element, accumulator.elements);
+                    }
+                    length++;
+                }
+                accumulator.recordLength(length);
+            }
+            case VALUE_STRING -> accumulator.record(JsonNodeType.STRING);
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> accumulator.record(JsonNodeType.NUMBER);
+            case VALUE_TRUE, VALUE_FALSE -> accumulator.record(JsonNodeType.BOOLEAN);
+            case VALUE_NULL -> accumulator.record(JsonNodeType.NULL);
+            default -> accumulator.record(JsonNodeType.POJO);
+        }
+    }
+
+    private Accumulator field(Accumulator parent, String name) {
+        if (parent.fields == null) {
+            parent.fields = new LinkedHashMap<>();
+        }
+        Accumulator child = parent.fields.get(name);
+        if (child == null) {
+            if (paths >= MAX_PATHS) {
+                truncated = true;
+                return null;
+            }
+            child = newAccumulator();
+            parent.fields.put(name, child);
+        }
+        return child;
+    }
+
+    private Accumulator newAccumulator() {
+        paths++;
+        return new Accumulator();
+    }
+
+    private static JsonSchemaHelper.Schema toSchema(Accumulator accumulator, String path, long parentCount, Map<String, PathStats> stats) {
+        Map<JsonNodeType, Long> types = new EnumMap<>(JsonNodeType.class);
+        for (JsonNodeType type : JsonNodeType.values()) {
+            if (accumulator.types[type.ordinal()] > 0) {
+                types.put(type, accumulator.types[type.ordinal()]);
+            }
+        }
+        stats.put(path, new PathStats(accumulator.count, parentCount, types, accumulator.maxArrayLength));
+
+        JsonSchemaHelper.ObjectSchema objectSchema = new JsonSchemaHelper.ObjectSchema();
+        if (accumulator.fields != null) {
+            long objects = accumulator.types[JsonNodeType.OBJECT.ordinal()];
+            accumulator.fields.forEach((name, field) ->
+                    objectSchema.fields.put(name, toSchema(field, path.isEmpty() ? name : path + "." + name, objects, stats)));
+        }
+        JsonSchemaHelper.Schema elementSchema = accumulator.elements == null ? new JsonSchemaHelper.PrimitiveSchema()
+                : toSchema(accumulator.elements, path + "[]", accumulator.types[JsonNodeType.ARRAY.ordinal()], stats);
+        if (accumulator.structure == JsonNodeType.OBJECT) {
+            return objectSchema;
+        }
+        if (accumulator.structure == JsonNodeType.ARRAY) {
+            Integer size = accumulator.lengthsDiffer || accumulator.arrayLength > Integer.MAX_VALUE ? null : (int) accumulator.arrayLength;
+            return new JsonSchemaHelper.ArraySchema(elementSchema, size);
+        }
+        return new JsonSchemaHelper.PrimitiveSchema();
+    }
+}